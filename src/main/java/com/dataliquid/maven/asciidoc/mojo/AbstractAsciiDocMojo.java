@@ -3,9 +3,17 @@ package com.dataliquid.maven.asciidoc.mojo;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import javax.inject.Inject;
+
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -15,6 +23,8 @@ import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.SafeMode;
 
 import com.dataliquid.maven.asciidoc.parser.FrontMatterParser;
+import com.dataliquid.maven.asciidoc.util.AsciiDocSessionContext;
+import com.dataliquid.maven.asciidoc.util.AsciidoctorRuntimeCache;
 import com.dataliquid.maven.asciidoc.util.FilePatternMatcher;
 
 /**
@@ -38,12 +48,31 @@ public abstract class AbstractAsciiDocMojo extends AbstractMojo {
     @Parameter(property = "asciidoc.excludes")
     protected String[] excludes;
 
+    @Parameter(property = "asciidoc.caseSensitive", defaultValue = "false")
+    protected boolean caseSensitive;
+
     @Parameter(property = "asciidoc.safeMode", defaultValue = "SAFE")
     protected String safeMode;
 
+    @Parameter(property = "asciidoc.reuseRuntime", defaultValue = "false")
+    protected boolean reuseRuntime;
+
+    @Parameter(property = "asciidoc.runtimeCacheSize", defaultValue = "2")
+    protected int runtimeCacheSize = 2;
+
+    // Shared with the other AsciiDoc goals of the session; null outside a
+    // Maven container, e.g. in unit tests
+    @Inject
+    private AsciiDocSessionContext sessionContext;
+
     private Asciidoctor asciidoctor;
+    // Set when the instance was set before the execution started
+    private boolean asciidoctorProvided;
     private FrontMatterParser frontMatterParser;
 
+    // Runtimes booting on background threads, keyed by their Ruby libraries
+    private final Map<List<String>, BackgroundBoot> backgroundBoots = new ConcurrentHashMap<>();
+
     /**
      * Template method that subclasses must implement to process the found files.
      */
@@ -66,6 +95,12 @@ public abstract class AbstractAsciiDocMojo extends AbstractMojo {
             return;
         }
 
+        asciidoctorProvided = asciidoctor != null;
+        if (isEarlyBootEnabled()) {
+            // The runtime boots while the source directory is scanned
+            bootAsciidoctorInBackground(Collections.emptyList());
+        }
+
         try {
             List<Path> files = findAsciiDocFiles();
             getLog().info("Found " + files.size() + " AsciiDoc files");
@@ -75,6 +110,8 @@ public abstract class AbstractAsciiDocMojo extends AbstractMojo {
             }
         } catch (IOException e) {
             throw new MojoExecutionException("Error during " + getMojoName(), e);
+        } finally {
+            releaseSharedAsciidoctor();
         }
     }
 
@@ -104,26 +141,180 @@ public abstract class AbstractAsciiDocMojo extends AbstractMojo {
      * Find all AsciiDoc files based on includes/excludes patterns.
      */
     protected List<Path> findAsciiDocFiles() throws IOException {
-        FilePatternMatcher matcher = new FilePatternMatcher(sourceDirectory, includes, excludes);
+        Path scanCache = getScanCacheFile();
+        if (sessionContext != null) {
+            return sessionContext
+                    .getMatchedFiles(sourceDirectory, includes, excludes, caseSensitive, scanCache, getLog());
+        }
+        FilePatternMatcher matcher = new FilePatternMatcher(sourceDirectory, includes, excludes, caseSensitive);
+        matcher.setParallel(true);
+        if (scanCache != null) {
+            matcher.setScanCache(scanCache, getLog());
+        }
         return matcher.getMatchedFiles().stream().map(File::toPath).collect(Collectors.toList());
     }
 
+    /**
+     * Get the file in which the directory listings of the source scan are kept
+     * between builds, so unchanged directories are not listed again.
+     *
+     * @return The cache file, or null to scan the source directory from scratch
+     */
+    protected Path getScanCacheFile() {
+        return null;
+    }
+
+    /**
+     * Whether this goal converts documents in any case, so the Asciidoctor
+     * runtime should start booting before the source directory is scanned.
+     */
+    protected boolean isEarlyBootEnabled() {
+        return false;
+    }
+
+    /**
+     * Start booting an Asciidoctor instance with the given Ruby libraries on a
+     * background thread. The next call to {@link #acquireAsciidoctor(List)} with
+     * the same libraries takes over the instance, waiting for the boot to finish
+     * if necessary. An instance that is not taken by the end of the execution is
+     * released once it has booted. Each set of libraries is booted at most once
+     * per execution, and not at all if an instance was provided.
+     */
+    protected void bootAsciidoctorInBackground(List<String> requiredLibraries) {
+        if (asciidoctorProvided) {
+            return;
+        }
+        backgroundBoots.computeIfAbsent(List.copyOf(requiredLibraries), BackgroundBoot::new);
+    }
+
     /**
      * Get or create the Asciidoctor instance.
      */
     protected Asciidoctor getAsciidoctor() {
         if (asciidoctor == null) {
-            asciidoctor = Asciidoctor.Factory.create();
+            asciidoctor = acquireAsciidoctor(Collections.emptyList());
         }
         return asciidoctor;
     }
 
+    /**
+     * Whether the Asciidoctor instance was set on the mojo before the execution
+     * started, e.g. by embedding code. Such an instance is used as is instead of
+     * booting further runtimes for it.
+     */
+    protected boolean isAsciidoctorProvided() {
+        return asciidoctorProvided;
+    }
+
+    /**
+     * Obtain an Asciidoctor instance with the given Ruby libraries loaded, owned
+     * by the caller until it is passed to
+     * {@link #releaseAsciidoctor(Asciidoctor, List)}. With reuseRuntime enabled a
+     * warm runtime from the JVM-wide cache is leased instead of booting a new one,
+     * otherwise the runtime of an earlier goal in the same session is reused.
+     */
+    protected Asciidoctor acquireAsciidoctor(List<String> requiredLibraries) {
+        BackgroundBoot boot = backgroundBoots.get(requiredLibraries);
+        if (boot != null) {
+            Asciidoctor instance = boot.claim();
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return bootAsciidoctor(requiredLibraries);
+    }
+
+    private Asciidoctor bootAsciidoctor(List<String> requiredLibraries) {
+        AsciidoctorRuntimeCache.RuntimeKey key = getRuntimeKey(requiredLibraries);
+        Asciidoctor instance;
+        if (reuseRuntime) {
+            AsciidoctorRuntimeCache cache = AsciidoctorRuntimeCache.getInstance();
+            cache.setMaxIdleRuntimes(runtimeCacheSize);
+            instance = cache.acquire(key, () -> {
+                getLog().debug("Starting new Asciidoctor runtime for " + key);
+                return createAsciidoctor();
+            });
+        } else if (sessionContext != null) {
+            instance = sessionContext.acquireAsciidoctor(key, this::createAsciidoctor);
+        } else {
+            instance = createAsciidoctor();
+        }
+
+        if (!requiredLibraries.isEmpty()) {
+            try {
+                // No-op for libraries the runtime has already loaded
+                instance.requireLibrary(requiredLibraries.toArray(new String[0]));
+            } catch (RuntimeException e) {
+                discardAsciidoctor(instance);
+                throw e;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Return an instance obtained from
+     * {@link #acquireAsciidoctor(List)}. Cached runtimes go back to the cache,
+     * otherwise the session keeps one runtime for later goals; all others are shut
+     * down.
+     */
+    protected void releaseAsciidoctor(Asciidoctor instance, List<String> requiredLibraries) {
+        try {
+            if (reuseRuntime) {
+                if (!AsciidoctorRuntimeCache.getInstance().release(instance)) {
+                    instance.shutdown();
+                }
+            } else if (sessionContext == null
+                    || !sessionContext.releaseAsciidoctor(getRuntimeKey(requiredLibraries), instance)) {
+                instance.shutdown();
+            }
+        } catch (RuntimeException e) {
+            getLog().debug("Failed to release Asciidoctor instance: " + e.getMessage());
+        }
+    }
+
+    private void discardAsciidoctor(Asciidoctor instance) {
+        try {
+            if (reuseRuntime) {
+                AsciidoctorRuntimeCache.getInstance().discard(instance);
+            } else {
+                instance.shutdown();
+            }
+        } catch (RuntimeException e) {
+            getLog().debug("Failed to shut down Asciidoctor instance: " + e.getMessage());
+        }
+    }
+
+    private void releaseSharedAsciidoctor() {
+        Asciidoctor instance = asciidoctor;
+        asciidoctor = null;
+        // A provided instance is owned by whoever injected it
+        if (instance != null && !asciidoctorProvided) {
+            releaseAsciidoctor(instance, Collections.emptyList());
+        }
+        backgroundBoots.values().forEach(BackgroundBoot::abandon);
+        backgroundBoots.clear();
+    }
+
+    private AsciidoctorRuntimeCache.RuntimeKey getRuntimeKey(List<String> requiredLibraries) {
+        return new AsciidoctorRuntimeCache.RuntimeKey(getClass().getClassLoader(), safeMode, requiredLibraries);
+    }
+
+    /**
+     * Create a new, independent Asciidoctor instance. Used for the shared
+     * instance and for additional instances owned by render workers.
+     */
+    protected Asciidoctor createAsciidoctor() {
+        return Asciidoctor.Factory.create();
+    }
+
     /**
      * Get or create the FrontMatterParser instance.
      */
     protected FrontMatterParser getFrontMatterParser() {
         if (frontMatterParser == null) {
-            frontMatterParser = new FrontMatterParser(getLog());
+            frontMatterParser = sessionContext != null ? sessionContext.getFrontMatterParser(getLog())
+                    : new FrontMatterParser(getLog());
         }
         return frontMatterParser;
     }
@@ -140,4 +331,68 @@ public abstract class AbstractAsciiDocMojo extends AbstractMojo {
                     "Invalid safeMode value: " + safeMode + ". Valid values are: UNSAFE, SAFE, SERVER, SECURE", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * An Asciidoctor instance booting on its own daemon thread. The instance is
+     * handed out once: either to the first caller of {@link #claim()} or, when
+     * abandoned, back to {@link #releaseAsciidoctor(Asciidoctor, List)}.
+     */
+    private final class BackgroundBoot {
+        private final List<String> requiredLibraries;
+        private final CompletableFuture<Asciidoctor> instance = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        BackgroundBoot(List<String> requiredLibraries) {
+            this.requiredLibraries = requiredLibraries;
+            getLog().debug("Booting Asciidoctor runtime " + requiredLibraries + " in the background");
+            Thread thread = new Thread(this::boot, "asciidoctor-boot");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void boot() {
+            try {
+                instance.complete(bootAsciidoctor(requiredLibraries));
+            } catch (RuntimeException | Error e) {
+                instance.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Take over the instance, waiting for the boot to finish.
+         *
+         * @return The instance, or null if it has already been taken
+         */
+        Asciidoctor claim() {
+            if (!taken.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return instance.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Release the instance as soon as it has booted, unless it has been taken.
+         */
+        void abandon() {
+            if (taken.compareAndSet(false, true)) {
+                instance.whenComplete((booted, failure) -> {
+                    if (booted != null) {
+                        releaseAsciidoctor(booted, requiredLibraries);
+                    } else {
+                        getLog().debug("Background boot of Asciidoctor runtime failed: " + failure.getMessage());
+                    }
+                });
+            }
+        }
+    }
+}
@@ -3,9 +3,16 @@ package com.dataliquid.maven.asciidoc.mojo;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.io.IOException;
 
@@ -13,20 +20,41 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.asciidoctor.Attributes;
-import org.asciidoctor.Options;
-import org.asciidoctor.OptionsBuilder;
-import org.asciidoctor.SafeMode;
+import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.ast.Document;
-
+import org.asciidoctor.ast.StructuralNode;
+
+import com.dataliquid.maven.asciidoc.render.DiagramBlock;
+import com.dataliquid.maven.asciidoc.render.DiagramBlockScanner;
+import com.dataliquid.maven.asciidoc.render.DiagramCache;
+import com.dataliquid.maven.asciidoc.render.DiagramGenerator;
+import com.dataliquid.maven.asciidoc.render.RenderConfiguration;
+import com.dataliquid.maven.asciidoc.render.RenderPipeline;
+import com.dataliquid.maven.asciidoc.render.RenderWorkerPool;
+import com.dataliquid.maven.asciidoc.util.ConfigurationFingerprint;
+import com.dataliquid.maven.asciidoc.util.DependencyScanner;
+import com.dataliquid.maven.asciidoc.util.HashAlgorithm;
 import com.dataliquid.maven.asciidoc.util.IncrementalBuildManager;
+import com.dataliquid.maven.asciidoc.util.SourceCache;
 import com.dataliquid.maven.asciidoc.template.DocumentContext;
-import com.dataliquid.maven.asciidoc.template.StringTemplateProcessor;
+import com.dataliquid.maven.asciidoc.template.TemplateRegistry;
 import com.dataliquid.maven.asciidoc.yaml.YamlAsciiDocProcessor;
 
 @Mojo(name = "render")
 public class RenderMojo extends AbstractAsciiDocMojo {
 
+    private static final List<String> DIAGRAM_LIBRARIES = List.of("asciidoctor-diagram");
+
+    // Directory listings of the last source scan, kept with the incremental state
+    private static final String SCAN_CACHE_FILE = ".asciidoc.scan";
+
+    // Threads of the reading and writing pipeline stages, which mostly wait for
+    // the disk
+    private static final int PIPELINE_IO_THREADS = 2;
+
+    private static final String PLUGIN_POM_PROPERTIES = "META-INF/maven/com.dataliquid.maven/asciidoc-maven-plugin"
+            + "/pom.properties";
+
     @Parameter(property = "asciidoc.workDirectory", defaultValue = "${project.build.directory}/asciidoc-work")
     private File workDirectory;
 
@@ -48,9 +76,24 @@ public class RenderMojo extends AbstractAsciiDocMojo {
     @Parameter(property = "asciidoc.diagramFormat", defaultValue = "svg")
     private String diagramFormat;
 
+    @Parameter(property = "asciidoc.diagramCacheDirectory")
+    private File diagramCacheDirectory;
+
+    @Parameter(property = "asciidoc.diagramCacheMaxSize", defaultValue = "512")
+    private long diagramCacheMaxSize = 512;
+
+    @Parameter(property = "asciidoc.diagramThreads", defaultValue = "1")
+    private int diagramThreads = 1;
+
     @Parameter(property = "asciidoc.enableIncremental", defaultValue = "true")
     private boolean enableIncremental;
 
+    @Parameter(property = "asciidoc.forceHash", defaultValue = "false")
+    private boolean forceHash;
+
+    @Parameter(property = "asciidoc.hashAlgorithm", defaultValue = "SHA-256")
+    private String hashAlgorithm = "SHA-256";
+
     @Parameter(property = "asciidoc.templateFile", defaultValue = "templates/partial.st")
     private String templateFile;
 
@@ -60,6 +103,32 @@ public class RenderMojo extends AbstractAsciiDocMojo {
     @Parameter(property = "asciidoc.outputFormat", defaultValue = "html")
     private String outputFormat;
 
+    @Parameter(property = "asciidoc.renderThreads", defaultValue = "1")
+    private int renderThreads = 1;
+
+    @Parameter(property = "asciidoc.renderPipeline", defaultValue = "false")
+    private boolean renderPipeline;
+
+    private RenderConfiguration renderConfiguration;
+
+    private TemplateRegistry templateRegistry;
+
+    private final DiagramBlockScanner diagramScanner = new DiagramBlockScanner();
+
+    // Runtime with asciidoctor-diagram loaded, only started for documents that
+    // contain diagrams
+    private Asciidoctor diagramAsciidoctor;
+
+    private DiagramCache diagramCache;
+
+    private DiagramGenerator diagramGenerator;
+
+    // Pending documents that need asciidoctor-diagram
+    private Set<Path> diagramFiles = Set.of();
+
+    // Source content of the current execution, read once per document
+    private SourceCache sourceCache;
+
     @Override
     protected String getMojoName() {
         return "AsciiDoc processing";
@@ -71,6 +140,7 @@ public class RenderMojo extends AbstractAsciiDocMojo {
             throw new MojoFailureException("No AsciiDoc files found matching the pattern");
         }
 
+        IncrementalBuildManager incrementalManager = null;
         try {
             if (!outputDirectory.exists()) {
                 outputDirectory.mkdirs();
@@ -82,42 +152,48 @@ public class RenderMojo extends AbstractAsciiDocMojo {
 
             if (enableDiagrams) {
                 getLog().info("Diagram support enabled (format: " + diagramFormat + ")");
-                getAsciidoctor().requireLibrary("asciidoctor-diagram");
+                if (isAsciidoctorProvided()) {
+                    // A provided instance renders every document, so it needs the library up front
+                    getAsciidoctor().requireLibrary(DIAGRAM_LIBRARIES.toArray(new String[0]));
+                }
             }
 
-            IncrementalBuildManager incrementalManager = null;
+            renderConfiguration = createRenderConfiguration();
+            templateRegistry = new TemplateRegistry(getLog());
+            sourceCache = new SourceCache();
+            initializeDiagrams();
+
             if (enableIncremental) {
+                HashAlgorithm algorithm = getHashAlgorithm();
                 try {
-                    incrementalManager = new IncrementalBuildManager(workDirectory, getLog());
+                    DependencyScanner dependencyScanner = new DependencyScanner(renderConfiguration.getAttributes(),
+                            document -> renderConfiguration.getBaseDir());
+                    incrementalManager = new IncrementalBuildManager(workDirectory, sourceDirectory.toPath(),
+                            outputDirectory.toPath(), getLog(), dependencyScanner, algorithm);
+                    incrementalManager.setForceHash(forceHash);
+                    incrementalManager.setSourceCache(sourceCache);
+                    incrementalManager.applyConfiguration(createConfigurationFingerprint());
                     getLog().info("Incremental build enabled");
                 } catch (Exception e) {
                     getLog().warn("Failed to initialize incremental build manager, falling back to full build", e);
                 }
             }
 
-            int skippedCount = 0;
-
-            for (Path adocFile : adocFiles) {
-                Path relativePath = sourceDirectory.toPath().relativize(adocFile);
-                Path outputPath = outputDirectory
-                        .toPath()
-                        .resolve(relativePath.toString().replaceAll("\\.adoc$", ".html"));
+            List<Path> pendingFiles = findPendingFiles(adocFiles, incrementalManager);
+            int skippedCount = adocFiles.size() - pendingFiles.size();
 
-                boolean shouldProcess = true;
-                if (incrementalManager != null) {
-                    if (!incrementalManager.needsRegeneration(adocFile, outputPath)) {
-                        getLog().debug("Skipping unchanged file: " + adocFile);
-                        skippedCount++;
-                        shouldProcess = false;
-                    }
-                }
+            diagramFiles = findDiagramFiles(pendingFiles);
+            if (diagramGenerator != null && !diagramFiles.isEmpty()) {
+                pregenerateDiagrams(pendingFiles);
+            }
 
-                if (shouldProcess) {
-                    boolean success = processFile(adocFile);
-                    if (success && incrementalManager != null) {
-                        incrementalManager.updateHash(adocFile);
-                    }
-                }
+            int threads = resolveRenderThreads();
+            if (renderPipeline && !pendingFiles.isEmpty()) {
+                processFilesInPipeline(pendingFiles, Math.min(threads, pendingFiles.size()), incrementalManager);
+            } else if (threads > 1 && pendingFiles.size() > 1) {
+                processFilesInParallel(pendingFiles, Math.min(threads, pendingFiles.size()), incrementalManager);
+            } else if (!pendingFiles.isEmpty()) {
+                processFilesSequentially(pendingFiles, incrementalManager);
             }
 
             if (incrementalManager != null) {
@@ -132,63 +208,481 @@ public class RenderMojo extends AbstractAsciiDocMojo {
                 }
             }
 
+            if (diagramCache != null) {
+                getLog()
+                        .info("Diagram cache: " + diagramCache.getHits() + " hits, " + diagramCache.getMisses()
+                                + " misses");
+                diagramCache.evict();
+            }
+
         } catch (Exception e) {
             throw new MojoExecutionException("Error processing AsciiDoc files", e);
+        } finally {
+            if (incrementalManager != null) {
+                // Keeps the journal of completed documents if the build failed
+                incrementalManager.close();
+            }
+            if (diagramAsciidoctor != null) {
+                releaseAsciidoctor(diagramAsciidoctor, DIAGRAM_LIBRARIES);
+                diagramAsciidoctor = null;
+            }
+            diagramCache = null;
+            diagramGenerator = null;
+            diagramFiles = Set.of();
+            sourceCache = null;
+        }
+    }
+
+    /**
+     * Without incremental builds every document is rendered. Otherwise the
+     * runtime only boots once a document turns out to need rendering, so an
+     * up-to-date build does not boot it at all.
+     */
+    @Override
+    protected boolean isEarlyBootEnabled() {
+        return !enableIncremental;
+    }
+
+    @Override
+    protected Path getScanCacheFile() {
+        return enableIncremental ? new File(workDirectory, SCAN_CACHE_FILE).toPath() : null;
+    }
+
+    /**
+     * Determine the files that must be rendered before any rendering starts.
+     * Checking a file is dominated by reading and hashing it, so all files are
+     * checked in parallel; the result keeps the original file order. The
+     * runtime starts booting as soon as the first file needs rendering.
+     */
+    private List<Path> findPendingFiles(List<Path> adocFiles, IncrementalBuildManager incrementalManager) {
+        if (incrementalManager == null) {
+            bootAsciidoctorInBackground(List.of());
+            return new ArrayList<>(adocFiles);
+        }
+
+        List<Boolean> dirty = adocFiles
+                .parallelStream()
+                .map(adocFile -> needsRendering(adocFile, incrementalManager))
+                .collect(Collectors.toList());
+
+        List<Path> pendingFiles = new ArrayList<>();
+        for (int i = 0; i < adocFiles.size(); i++) {
+            if (dirty.get(i)) {
+                pendingFiles.add(adocFiles.get(i));
+            } else {
+                getLog().debug("Skipping unchanged file: " + adocFiles.get(i));
+            }
+        }
+        return pendingFiles;
+    }
+
+    private boolean needsRendering(Path adocFile, IncrementalBuildManager incrementalManager) {
+        boolean regenerate = incrementalManager.needsRegeneration(adocFile, getOutputPath(adocFile));
+        if (regenerate) {
+            // Boots while the remaining files are checked
+            bootAsciidoctorInBackground(List.of());
         }
+        return regenerate;
+    }
+
+    private Path getOutputPath(Path adocFile) {
+        Path relativePath = sourceDirectory.toPath().relativize(adocFile);
+        return outputDirectory.toPath().resolve(relativePath.toString().replaceAll("\\.adoc$", ".html"));
     }
 
-    private boolean processFile(Path file) {
+    private HashAlgorithm getHashAlgorithm() throws MojoExecutionException {
         try {
+            return HashAlgorithm.fromName(hashAlgorithm);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(
+                    "Invalid hashAlgorithm value: " + hashAlgorithm + ". Valid values are: SHA-256, XXH64", e);
+        }
+    }
+
+    private int resolveRenderThreads() {
+        return renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private int resolveDiagramThreads() {
+        return diagramThreads > 0 ? diagramThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private void processFilesSequentially(List<Path> files, IncrementalBuildManager incrementalManager) {
+        for (Path file : files) {
             getLog().info("Processing: " + file);
+            Asciidoctor asciidoctor = diagramFiles.contains(file) ? getDiagramAsciidoctor() : getAsciidoctor();
+            RenderResult result = renderFile(file, asciidoctor);
+            if (completeFile(result) && incrementalManager != null) {
+                incrementalManager.updateHash(file, result.getOutputs());
+            }
+            sourceCache.release(file);
+        }
+    }
 
-            String fileName = file.getFileName().toString().toLowerCase();
-            String processedContent;
+    /**
+     * Render the given files on a pool of worker threads. Results are consumed in
+     * the original file order so that logging and incremental state updates stay
+     * deterministic regardless of which worker finishes first.
+     */
+    private void processFilesInParallel(List<Path> files, int threads, IncrementalBuildManager incrementalManager)
+            throws MojoExecutionException {
+        getLog().info("Rendering " + files.size() + " files with " + threads + " worker threads");
+
+        // Initialize shared helpers before fanning out to the workers
+        getFrontMatterParser();
+
+        try (RenderWorkerPool pool = new RenderWorkerPool(threads, this::acquireAsciidoctor,
+                this::releaseAsciidoctor, getLog())) {
+            List<Future<RenderResult>> results = new ArrayList<>();
+            for (Path file : files) {
+                List<String> libraries = diagramFiles.contains(file) ? DIAGRAM_LIBRARIES : List.of();
+                results.add(pool.submit(libraries, asciidoctor -> renderFile(file, asciidoctor)));
+            }
 
-            // Check if this is a YAML file
-            if (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) {
-                processedContent = processYamlFile(file);
-            } else {
-                processedContent = processAsciiDocFile(file);
+            for (int i = 0; i < files.size(); i++) {
+                getLog().info("Processing: " + files.get(i));
+                RenderResult result = results.get(i).get();
+                if (completeFile(result) && incrementalManager != null) {
+                    incrementalManager.updateHash(files.get(i), result.getOutputs());
+                }
+                sourceCache.release(files.get(i));
+            }
+
+            pool.logStatistics();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while rendering AsciiDoc files", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Render worker failed", e.getCause());
+        }
+    }
+
+    /**
+     * Render the given files in a staged pipeline. Reading, conversion,
+     * templating and writing run on separate threads connected by bounded
+     * queues, so disk access overlaps with conversion. Conversion runs on
+     * {@code threads} threads, each with its own Asciidoctor instances. Results
+     * are consumed in the original file order, as in parallel mode.
+     */
+    private void processFilesInPipeline(List<Path> files, int threads, IncrementalBuildManager incrementalManager)
+            throws MojoExecutionException {
+        // Templating is cheap compared to conversion
+        int templateThreads = Math.max(1, threads / 2);
+        getLog()
+                .info("Rendering " + files.size() + " files in a pipeline with " + threads + " conversion threads");
+
+        // Initialize shared helpers before fanning out to the stages
+        getFrontMatterParser();
+
+        // The pipeline is closed first, so its threads are done with their
+        // instances when the pool releases them
+        try (RenderWorkerPool pool = new RenderWorkerPool(threads, this::acquireAsciidoctor,
+                this::releaseAsciidoctor, getLog());
+                RenderPipeline<RenderJob> pipeline = new RenderPipeline<>(Math.max(4, 2 * threads), getLog())) {
+            pipeline.addStage("read", PIPELINE_IO_THREADS, this::readSource);
+            pipeline
+                    .addStage("convert", threads,
+                            job -> pool.execute(job.libraries, asciidoctor -> convertDocument(job, asciidoctor)));
+            pipeline.addStage("template", templateThreads, this::applyTemplate);
+            pipeline.addStage("write", PIPELINE_IO_THREADS, this::writeOutput);
+            pipeline.start();
+
+            List<Future<RenderJob>> results = new ArrayList<>();
+            int completed = 0;
+            for (Path file : files) {
+                List<String> libraries = diagramFiles.contains(file) ? DIAGRAM_LIBRARIES : List.of();
+                results.add(pipeline.submit(new RenderJob(file, libraries)));
+                // Record finished documents while later ones are still queued
+                while (completed < results.size() && results.get(completed).isDone()) {
+                    completeJob(files.get(completed), results.get(completed), incrementalManager);
+                    completed++;
+                }
+            }
+            for (; completed < results.size(); completed++) {
+                completeJob(files.get(completed), results.get(completed), incrementalManager);
             }
 
-            if (processedContent == null) {
-                return false;
+            pipeline.logStatistics();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while rendering AsciiDoc files", e);
+        }
+    }
+
+    /**
+     * Record a document that left the pipeline. Called in the original file
+     * order, so the log lists the documents in that order.
+     */
+    private void completeJob(Path file, Future<RenderJob> job, IncrementalBuildManager incrementalManager)
+            throws InterruptedException, MojoExecutionException {
+        getLog().info("Processing: " + file);
+        RenderResult result;
+        try {
+            result = job.get().toResult();
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof Exception)) {
+                throw new MojoExecutionException("Render pipeline failed", e.getCause());
             }
+            result = RenderResult.failed(file, (Exception) e.getCause());
+        }
+        if (completeFile(result) && incrementalManager != null) {
+            incrementalManager.updateHash(file, result.getOutputs());
+        }
+        sourceCache.release(file);
+    }
 
-            // Write output file for both YAML and AsciiDoc
-            writeOutputFile(file, processedContent);
-            return true;
+    private Set<Path> findDiagramFiles(List<Path> files) {
+        Set<Path> result = new HashSet<>();
+        for (Path file : files) {
+            if (requiresDiagrams(file)) {
+                if (result.isEmpty()) {
+                    // Boots while the remaining files are checked
+                    getLog().info("Loading asciidoctor-diagram for documents with diagram blocks");
+                    bootAsciidoctorInBackground(DIAGRAM_LIBRARIES);
+                }
+                result.add(file);
+            }
+        }
+        return result;
+    }
 
-        } catch (Exception e) {
-            getLog().error("Error processing file: " + file, e);
+    /**
+     * Check whether a file needs asciidoctor-diagram. Loading the library takes
+     * seconds and slows down every conversion, so it is only used for documents
+     * that actually contain diagram blocks.
+     */
+    private boolean requiresDiagrams(Path file) {
+        if (!enableDiagrams) {
+            return false;
+        }
+        try {
+            boolean diagrams = diagramScanner.containsDiagrams(file, sourceCache.get(file).getText());
+            if (diagrams) {
+                getLog().debug("Diagram blocks found in " + file);
+            }
+            return diagrams;
+        } catch (IOException e) {
+            // Rendering reports the unreadable file
             return false;
         }
     }
 
-    private String processYamlFile(Path yamlFile) throws IOException, MojoExecutionException {
-        getLog().info("Processing YAML file with AsciiDoc content: " + yamlFile);
-        Options options = createAsciidoctorOptions();
-        YamlAsciiDocProcessor yamlProcessor = new YamlAsciiDocProcessor(getAsciidoctor(), options, getLog());
-        return yamlProcessor.processYamlFile(yamlFile);
+    /**
+     * Restore or generate the diagram images of all pending documents before
+     * they are converted. Identical diagrams are generated once, and the
+     * diagrams are spread over a bounded pool of workers, each with its own
+     * diagram runtime. The conversions then find every image up to date.
+     */
+    private void pregenerateDiagrams(List<Path> files) throws MojoExecutionException {
+        Map<String, Path> documents = new LinkedHashMap<>();
+        Map<String, DiagramBlock> blocks = new LinkedHashMap<>();
+        for (Path file : files) {
+            if (!diagramFiles.contains(file)) {
+                continue;
+            }
+            try {
+                for (DiagramBlock block : diagramScanner
+                        .findDiagramBlocks(file, sourceCache.get(file).getText())) {
+                    String key = DiagramCache.keyFor(block, diagramFormat);
+                    if (blocks.putIfAbsent(key, block) == null) {
+                        documents.put(key, file);
+                    }
+                }
+            } catch (IOException e) {
+                // Rendering reports the unreadable file
+            }
+        }
+        if (blocks.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(resolveDiagramThreads(), blocks.size());
+        long start = System.nanoTime();
+        try (RenderWorkerPool pool = new RenderWorkerPool(threads, this::acquireAsciidoctor,
+                this::releaseAsciidoctor, getLog())) {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Map.Entry<String, DiagramBlock> entry : blocks.entrySet()) {
+                Path document = documents.get(entry.getKey());
+                results.add(pool.submit(DIAGRAM_LIBRARIES, asciidoctor -> {
+                    diagramGenerator.prepare(document, entry.getValue(), asciidoctor);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating diagrams", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Diagram worker failed", e.getCause());
+        }
+
+        getLog()
+                .info(String
+                        .format(Locale.ROOT, "Prepared %d diagrams of %d documents with %d workers in %.2f s",
+                                blocks.size(), diagramFiles.size(), threads,
+                                (System.nanoTime() - start) / 1_000_000_000.0));
+    }
+
+    /**
+     * The diagram pre-pass only pays off with a shared diagram cache or more
+     * than one diagram worker; otherwise the conversion generates the diagrams.
+     */
+    private void initializeDiagrams() {
+        if (!enableDiagrams) {
+            return;
+        }
+        if (diagramCacheDirectory != null) {
+            try {
+                diagramCache = new DiagramCache(diagramCacheDirectory.toPath(), diagramCacheMaxSize * 1024 * 1024,
+                        DiagramCache.detectToolVersions(getClass().getClassLoader()), getLog());
+                getLog().info("Using diagram cache: " + diagramCacheDirectory);
+            } catch (IOException e) {
+                getLog().warn("Failed to initialize diagram cache, diagrams are generated during conversion", e);
+            }
+        }
+        if (diagramCache == null && resolveDiagramThreads() <= 1) {
+            return;
+        }
+
+        Map<String, Object> diagramAttributes = renderConfiguration.getAttributes();
+        diagramGenerator = new DiagramGenerator(renderConfiguration, diagramCache,
+                Path.of((String) diagramAttributes.get("imagesoutdir")),
+                Path.of((String) diagramAttributes.get("diagram-cachedir")),
+                workDirectory.toPath().resolve("diagram-tmp"), diagramFormat, getLog());
+    }
+
+    private Asciidoctor getDiagramAsciidoctor() {
+        if (isAsciidoctorProvided()) {
+            return getAsciidoctor();
+        }
+        if (diagramAsciidoctor == null) {
+            diagramAsciidoctor = acquireAsciidoctor(DIAGRAM_LIBRARIES);
+        }
+        return diagramAsciidoctor;
+    }
+
+    /**
+     * Render and write a single file. Never throws; failures are captured in the
+     * returned result and reported by {@link #completeFile(RenderResult)}.
+     */
+    private RenderResult renderFile(Path file, Asciidoctor asciidoctor) {
+        RenderJob job = new RenderJob(file, List.of());
+        try {
+            if (readSource(job) && convertDocument(job, asciidoctor) && applyTemplate(job)) {
+                writeOutput(job);
+            }
+            return job.toResult();
+        } catch (Exception e) {
+            return RenderResult.failed(file, e);
+        }
+    }
+
+    /**
+     * Read the source of a document. The steps of rendering a document return
+     * false when the document cannot be rendered for a reason they have
+     * already reported.
+     */
+    private boolean readSource(RenderJob job) throws IOException {
+        job.content = sourceCache.get(job.file).getText();
+        return true;
     }
 
-    private String processAsciiDocFile(Path adocFile) throws IOException, MojoExecutionException {
-        String content = Files.readString(adocFile);
+    /**
+     * Convert a document. AsciiDoc documents are converted to HTML that still
+     * needs the template; YAML files are complete afterwards.
+     */
+    private boolean convertDocument(RenderJob job, Asciidoctor asciidoctor) {
+        String fileName = job.file.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) {
+            job.output = processYamlFile(job.file, job.content, asciidoctor);
+            return job.output != null;
+        }
+
+        // Parse the document once; both metadata and HTML are taken from it
+        Document document = asciidoctor.load(job.content, renderConfiguration.getOptions());
+        if (document == null) {
+            getLog().error("Failed to load " + job.file + " - AsciidoctorJ returned no document");
+            return false;
+        }
+
+        // Collect metadata before converting, while only header attributes are set
+        job.metadata = collectAllMetadata(job.file, document);
 
         // Convert AsciiDoc to HTML
-        String generatedHtml = convertAsciiDocToHtml(content, adocFile);
-        if (generatedHtml == null) {
-            return null;
+        job.html = convertAsciiDocToHtml(document, job.file);
+        if (job.html == null) {
+            return false;
         }
+        job.images.addAll(findGeneratedImages(document));
+        return true;
+    }
 
-        // Collect metadata for template processing
-        Map<String, Object> metadata = collectAllMetadata(adocFile);
+    private boolean applyTemplate(RenderJob job) {
+        if (job.html != null) {
+            job.output = processWithTemplate(job.html, job.metadata);
+        }
+        return job.output != null;
+    }
 
-        // Process through template
-        return processWithTemplate(generatedHtml, metadata);
+    private boolean writeOutput(RenderJob job) throws IOException {
+        // Write output file for both YAML and AsciiDoc
+        job.outputPath = writeOutputFile(job.file, job.output);
+        return true;
     }
 
-    private Options createAsciidoctorOptions() throws MojoExecutionException {
+    private boolean completeFile(RenderResult result) {
+        if (result.getError() != null) {
+            getLog().error("Error processing file: " + result.getFile(), result.getError());
+            return false;
+        }
+        if (result.getOutputPath() == null) {
+            return false;
+        }
+        getLog().info("Generated: " + result.getOutputPath());
+        return true;
+    }
+
+    private String processYamlFile(Path yamlFile, String content, Asciidoctor asciidoctor) {
+        getLog().info("Processing YAML file with AsciiDoc content: " + yamlFile);
+        YamlAsciiDocProcessor yamlProcessor = new YamlAsciiDocProcessor(asciidoctor,
+                renderConfiguration.getOptions(), getLog());
+        return yamlProcessor.processYamlContent(content);
+    }
+
+    /**
+     * Find the diagram images a conversion wrote to the images output directory.
+     * asciidoctor-diagram replaces every diagram block with an image block whose
+     * target is the generated file; images from the source tree are not part of
+     * the output directory and are skipped.
+     */
+    private List<Path> findGeneratedImages(Document document) {
+        Object imagesOutDir = renderConfiguration.getAttributes().get("imagesoutdir");
+        if (imagesOutDir == null) {
+            return List.of();
+        }
+
+        Path imagesDir = Path.of(imagesOutDir.toString()).toAbsolutePath().normalize();
+        List<Path> images = new ArrayList<>();
+        for (StructuralNode node : document.findBy(Map.of("context", ":image"))) {
+            Object target = node.getAttributes().get("target");
+            if (target == null) {
+                continue;
+            }
+            Path image = imagesDir.resolve(target.toString()).normalize();
+            if (image.startsWith(imagesDir) && Files.isRegularFile(image) && !images.contains(image)) {
+                images.add(image);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Build the Asciidoctor configuration shared by all documents of this
+     * execution. Directories are created here once instead of per document.
+     */
+    private RenderConfiguration createRenderConfiguration() throws MojoExecutionException {
         Map<String, Object> allAttributes = new HashMap<>(attributes);
 
         if (enableDiagrams) {
@@ -201,27 +695,47 @@ public class RenderMojo extends AbstractAsciiDocMojo {
             allAttributes.put("diagram-cachedir", new File(workDirectory, "diagram-cache").getAbsolutePath());
         }
 
-        // Enable AsciidoctorJ's built-in front matter handling
-        Attributes documentAttributes = Attributes.builder().attributes(allAttributes).skipFrontMatter(true).build();
-
-        OptionsBuilder optionsBuilder = Options
-                .builder()
-                .safe(getSafeMode())
-                .mkDirs(true)
-                .attributes(documentAttributes);
+        File converterTemplateDir = templateDir != null && templateDir.exists() ? templateDir : null;
+        // Every document shares the project directory as base directory, the
+        // SAFE mode jail for includes and generated diagrams
+        Path baseDir = project != null && project.getBasedir() != null ? project.getBasedir().toPath() : null;
+        return new RenderConfiguration(getSafeMode(), allAttributes, converterTemplateDir, baseDir);
+    }
 
-        if (templateDir != null && templateDir.exists()) {
-            optionsBuilder.templateDirs(templateDir);
+    /**
+     * Describe everything besides the source files that affects the rendered
+     * output, so that incremental builds notice POM and template changes.
+     */
+    private ConfigurationFingerprint createConfigurationFingerprint() throws IOException {
+        ConfigurationFingerprint fingerprint = new ConfigurationFingerprint();
+        Map<String, Object> fingerprintAttributes = new HashMap<>(renderConfiguration.getAttributes());
+        // Locations inside the work directory do not affect the output and would
+        // tie the cache to the checkout it was created in
+        fingerprintAttributes.remove("imagesoutdir");
+        fingerprintAttributes.remove("diagram-cachedir");
+        fingerprint.put("attributes", fingerprintAttributes);
+        fingerprint.put("safeMode", renderConfiguration.getSafeMode());
+        fingerprint.put("outputFormat", outputFormat);
+        fingerprint.put("enableDiagrams", enableDiagrams);
+        fingerprint.put("diagramFormat", diagramFormat);
+        fingerprint.putFile("templateDir", templateDir != null ? templateDir.toPath() : null);
+        if (hasInlineTemplate()) {
+            fingerprint.put("template", template);
+        } else if (templateFile != null && new File(templateFile).exists()) {
+            fingerprint.putFile("template", Path.of(templateFile));
+        } else if (templateFile != null) {
+            fingerprint.putResource("template", getClass().getClassLoader(), templateFile);
         }
 
-        return optionsBuilder.build();
+        ClassLoader classLoader = getClass().getClassLoader();
+        fingerprint.putResource("pluginVersion", classLoader, PLUGIN_POM_PROPERTIES);
+        fingerprint.put("toolVersions", DiagramCache.detectToolVersions(classLoader));
+        return fingerprint;
     }
 
-    private String convertAsciiDocToHtml(String content, Path adocFile) throws IOException, MojoExecutionException {
-        Options options = createAsciidoctorOptions();
-
-        // Convert to HTML using options with custom attributes
-        String generatedHtml = getAsciidoctor().convert(content, options);
+    private String convertAsciiDocToHtml(Document document, Path adocFile) {
+        // Convert the already parsed document using the options it was loaded with
+        String generatedHtml = document.convert();
 
         if (generatedHtml == null || generatedHtml.trim().isEmpty()) {
             getLog().error("Failed to convert " + adocFile + " - AsciidoctorJ returned null or empty content");
@@ -259,16 +773,14 @@ public class RenderMojo extends AbstractAsciiDocMojo {
     }
 
     private String processInlineTemplate(DocumentContext context) {
-        StringTemplateProcessor processor = new StringTemplateProcessor(templateFile, getLog());
-        return processor.processInline(template, context);
+        return templateRegistry.getInlineTemplate(template).render(context);
     }
 
     private String processFileTemplate(DocumentContext context) {
-        StringTemplateProcessor processor = new StringTemplateProcessor(templateFile, getLog());
-        return processor.process(templateFile, context);
+        return templateRegistry.getFileTemplate(templateFile).render(context);
     }
 
-    private void writeOutputFile(Path inputFile, String content) throws IOException {
+    private Path writeOutputFile(Path inputFile, String content) throws IOException {
         Path absoluteRelativePath = sourceDirectory.toPath().toAbsolutePath().relativize(inputFile.toAbsolutePath());
         getLog().debug("Source dir: " + sourceDirectory.toPath().toAbsolutePath());
         getLog().debug("Input file: " + inputFile.toAbsolutePath());
@@ -281,7 +793,7 @@ public class RenderMojo extends AbstractAsciiDocMojo {
         Files.createDirectories(outputPath.getParent());
         Files.writeString(outputPath, content);
 
-        getLog().info("Generated: " + outputPath);
+        return outputPath;
     }
 
     private String determineOutputFileName(Path inputFile, Path relativePath) {
@@ -302,56 +814,106 @@ public class RenderMojo extends AbstractAsciiDocMojo {
         }
     }
 
-    private Map<String, Object> collectAllMetadata(Path adocFile) throws IOException, MojoExecutionException {
+    private Map<String, Object> collectAllMetadata(Path adocFile, Document document) {
         Map<String, Object> metadata = new HashMap<>();
 
-        String content = Files.readString(adocFile);
+        // Add file metadata
+        metadata.put("_file", sourceDirectory.toPath().relativize(adocFile).toString());
+        metadata.put("_title", document.getTitle());
 
-        // Use AsciidoctorJ to parse the document
-        Map<String, Object> allAttributes = new HashMap<>(attributes);
+        // Add front matter (if exists)
+        String frontMatter = (String) document.getAttributes().get("front-matter");
+        if (frontMatter != null && !frontMatter.trim().isEmpty()) {
+            Map<String, Object> frontMatterData = getFrontMatterParser().parse(frontMatter);
+            metadata.put("frontmatter", frontMatterData);
+        }
 
-        // Prevent diagram generation in project root (same as in convertAsciiDocToHtml)
-        if (enableDiagrams) {
-            File imagesOutDir = new File(workDirectory, "images");
-            imagesOutDir.mkdirs();
-            allAttributes.put("imagesoutdir", imagesOutDir.getAbsolutePath());
-            allAttributes.put("diagram-format", diagramFormat);
-            allAttributes.put("diagram-cachedir", new File(workDirectory, "diagram-cache").getAbsolutePath());
+        // Add document attributes
+        Map<String, Object> attributes = new HashMap<>();
+        document.getAttributes().forEach((key, value) -> {
+            // Filter out internal attributes
+            if (!key.startsWith("asciidoctor-") && !key.startsWith("backend-") && !key.equals("docfile")
+                    && !key.equals("docdir") && !key.equals("front-matter") && !key.equals("filetype")) {
+                attributes.put(key, value);
+            }
+        });
+        metadata.put("attributes", attributes);
+
+        return metadata;
+    }
+
+    /**
+     * State of a file while it passes through the steps of rendering.
+     */
+    private static final class RenderJob {
+        private final Path file;
+        private final List<String> libraries;
+        private final List<Path> images = new ArrayList<>();
+        private String content;
+        // Converted HTML and metadata of AsciiDoc documents, input of the template
+        private String html;
+        private Map<String, Object> metadata;
+        private String output;
+        private Path outputPath;
+
+        RenderJob(Path file, List<String> libraries) {
+            this.file = file;
+            this.libraries = libraries;
         }
 
-        Attributes documentAttributes = Attributes.builder().attributes(allAttributes).skipFrontMatter(true).build();
+        RenderResult toResult() {
+            return outputPath != null ? RenderResult.generated(file, outputPath, images)
+                    : RenderResult.failed(file, null);
+        }
+    }
 
-        Options options = Options.builder().safe(getSafeMode()).attributes(documentAttributes).build();
+    /**
+     * Outcome of rendering a single file.
+     */
+    private static final class RenderResult {
+        private final Path file;
+        private final Path outputPath;
+        private final List<Path> images;
+        private final Exception error;
+
+        private RenderResult(Path file, Path outputPath, List<Path> images, Exception error) {
+            this.file = file;
+            this.outputPath = outputPath;
+            this.images = images;
+            this.error = error;
+        }
 
-        Document document = getAsciidoctor().load(content, options);
+        static RenderResult generated(Path file, Path outputPath, List<Path> images) {
+            return new RenderResult(file, outputPath, images, null);
+        }
 
-        // Add file metadata
-        metadata.put("_file", sourceDirectory.toPath().relativize(adocFile).toString());
-        metadata.put("_title", document != null ? document.getTitle() : null);
+        static RenderResult failed(Path file, Exception error) {
+            return new RenderResult(file, null, List.of(), error);
+        }
 
-        // Add front matter (if exists)
-        if (document != null) {
-            String frontMatter = (String) document.getAttributes().get("front-matter");
-            if (frontMatter != null && !frontMatter.trim().isEmpty()) {
-                Map<String, Object> frontMatterData = getFrontMatterParser().parse(frontMatter);
-                metadata.put("frontmatter", frontMatterData);
-            }
+        Path getFile() {
+            return file;
+        }
 
-            // Add document attributes
-            Map<String, Object> attributes = new HashMap<>();
-            document.getAttributes().forEach((key, value) -> {
-                // Filter out internal attributes
-                if (!key.startsWith("asciidoctor-") && !key.startsWith("backend-") && !key.equals("docfile")
-                        && !key.equals("docdir") && !key.equals("front-matter") && !key.equals("filetype")) {
-                    attributes.put(key, value);
-                }
-            });
-            metadata.put("attributes", attributes);
-        } else {
-            metadata.put("frontmatter", new HashMap<>());
-            metadata.put("attributes", new HashMap<>());
+        Path getOutputPath() {
+            return outputPath;
         }
 
-        return metadata;
+        /**
+         * Gets every file written for the document: the output file followed by
+         * the generated images.
+         */
+        List<Path> getOutputs() {
+            List<Path> outputs = new ArrayList<>();
+            if (outputPath != null) {
+                outputs.add(outputPath);
+            }
+            outputs.addAll(images);
+            return outputs;
+        }
+
+        Exception getError() {
+            return error;
+        }
     }
-}
\ No newline at end of file
+}
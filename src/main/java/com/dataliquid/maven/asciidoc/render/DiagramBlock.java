@@ -0,0 +1,59 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.nio.file.Path;
+
+/**
+ * A diagram block or block macro found in a document source, together with the
+ * document header attributes it is rendered with.
+ */
+public final class DiagramBlock {
+
+    private final String type;
+    private final String source;
+    private final String header;
+    private final Path referencedFile;
+
+    /**
+     * Creates a diagram block.
+     *
+     * @param type           Diagram type, e.g. {@code plantuml}
+     * @param source         Block or block macro text exactly as written
+     * @param header         Attribute entries of the enclosing document header
+     * @param referencedFile Diagram source file of a block macro, null for
+     *                       delimited blocks
+     */
+    public DiagramBlock(String type, String source, String header, Path referencedFile) {
+        this.type = type;
+        this.source = source;
+        this.header = header;
+        this.referencedFile = referencedFile;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public Path getReferencedFile() {
+        return referencedFile;
+    }
+
+    /**
+     * Builds a minimal document that renders only this diagram with the same
+     * header attributes as the original document.
+     */
+    public String toDocument() {
+        StringBuilder document = new StringBuilder("= Diagram\n");
+        if (!header.isEmpty()) {
+            document.append(header).append('\n');
+        }
+        return document.append('\n').append(source).append('\n').toString();
+    }
+}
@@ -0,0 +1,225 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap textual pre-scan that decides whether a document needs
+ * asciidoctor-diagram. Diagram blocks, block macros and inline macros are
+ * detected in the document and, recursively, in the files it includes. Include
+ * targets that cannot be resolved statically (attribute references, URLs) are
+ * assumed to contain diagrams.
+ * <p>
+ * The scanner also extracts delimited diagram blocks and diagram block macros,
+ * so that their images can be generated ahead of the conversion.
+ */
+public class DiagramBlockScanner {
+
+    // Block names registered by asciidoctor-diagram
+    private static final String DIAGRAM_NAMES = "a2s|actdiag|blockdiag|bpmn|bytefield|d2|dbml|diagrams|ditaa|dpic|erd"
+            + "|gnuplot|graphviz|lilypond|meme|mermaid|msc|nomnoml|nwdiag|packetdiag|pikchr|plantuml|rackdiag"
+            + "|seqdiag|smcat|state_machine_cat|structurizr|svgbob|symbolator|syntrax|tikz|umlet|vega|vegalite"
+            + "|wavedrom";
+
+    // [plantuml], [plantuml,target,svg], [ditaa#id], ... and plantuml::file[] / plantuml:file[]
+    private static final Pattern DIAGRAM_PATTERN = Pattern
+            .compile("^\\s*\\[\\s*(?:" + DIAGRAM_NAMES + ")\\s*[,#.%\\]]|(?<![\\w-])(?:" + DIAGRAM_NAMES
+                    + ")::?[^\\s\\[]*\\[", Pattern.MULTILINE);
+
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^\\s*include::([^\\[]+)\\[", Pattern.MULTILINE);
+
+    private static final Pattern BLOCK_ATTRIBUTES_PATTERN = Pattern
+            .compile("^\\[\\s*(" + DIAGRAM_NAMES + ")\\s*(?:[,#.%].*)?\\]\\s*$");
+
+    private static final Pattern BLOCK_MACRO_PATTERN = Pattern
+            .compile("^(" + DIAGRAM_NAMES + ")::([^\\s\\[]+)\\[.*\\]\\s*$");
+
+    private static final Pattern DELIMITER_PATTERN = Pattern
+            .compile("^(?:-{4,}|\\.{4,}|={4,}|\\*{4,}|_{4,}|\\+{4,}|--|`{3,}.*)\\s*$");
+
+    private static final Pattern BLOCK_METADATA_PATTERN = Pattern.compile("^(?:\\.[^\\s.].*|\\[\\[.+\\]\\]|\\[#.+\\])$");
+
+    private static final Pattern ATTRIBUTE_ENTRY_PATTERN = Pattern.compile("^:!?[\\w-]+!?:.*$");
+
+    /**
+     * Checks whether the document or any file it includes contains a diagram.
+     *
+     * @param  document Path of the document, used to resolve includes
+     * @param  content  Source of the document
+     *
+     * @return          {@code true} if asciidoctor-diagram is needed to render
+     *                  the document
+     */
+    public boolean containsDiagrams(Path document, String content) {
+        return containsDiagrams(document, content, new HashSet<>());
+    }
+
+    private boolean containsDiagrams(Path document, String content, Set<Path> visited) {
+        if (!visited.add(document.toAbsolutePath().normalize())) {
+            return false;
+        }
+        if (DIAGRAM_PATTERN.matcher(content).find()) {
+            return true;
+        }
+
+        Matcher includes = INCLUDE_PATTERN.matcher(content);
+        while (includes.find()) {
+            String target = includes.group(1).trim();
+            if (target.contains("{") || target.contains("://")) {
+                return true;
+            }
+
+            Path included;
+            try {
+                Path parent = document.toAbsolutePath().getParent();
+                included = parent != null ? parent.resolve(target) : Path.of(target);
+            } catch (InvalidPathException e) {
+                return true;
+            }
+            if (Files.isRegularFile(included)) {
+                try {
+                    if (containsDiagrams(included, Files.readString(included), visited)) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    // Asciidoctor reports unreadable includes itself
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the diagram blocks and block macros of a document and the files
+     * it includes. Inline diagram macros and blocks in includes that cannot be
+     * resolved statically are not returned; the conversion renders those.
+     *
+     * @param  document Path of the document, used to resolve includes
+     * @param  content  Source of the document
+     *
+     * @return          Diagram blocks in document order
+     */
+    public List<DiagramBlock> findDiagramBlocks(Path document, String content) {
+        List<DiagramBlock> blocks = new ArrayList<>();
+        collectDiagramBlocks(document, content, extractHeader(content), blocks, new HashSet<>());
+        return blocks;
+    }
+
+    private void collectDiagramBlocks(Path document, String content, String header, List<DiagramBlock> blocks,
+            Set<Path> visited) {
+        if (!visited.add(document.toAbsolutePath().normalize())) {
+            return;
+        }
+
+        String[] lines = content.split("\\r?\\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+
+            Matcher macro = BLOCK_MACRO_PATTERN.matcher(line);
+            if (macro.matches()) {
+                Path referencedFile = resolve(document, macro.group(2));
+                if (referencedFile != null && Files.isRegularFile(referencedFile)) {
+                    blocks.add(new DiagramBlock(macro.group(1), line, header, referencedFile));
+                }
+                continue;
+            }
+
+            Matcher attributes = BLOCK_ATTRIBUTES_PATTERN.matcher(line);
+            if (attributes.matches() && i + 1 < lines.length) {
+                // Block title and anchor lines belong to the block attributes
+                int begin = i;
+                while (begin > 0 && BLOCK_METADATA_PATTERN.matcher(lines[begin - 1]).matches()) {
+                    begin--;
+                }
+                int end = findBlockEnd(lines, i + 1);
+                blocks.add(new DiagramBlock(attributes.group(1),
+                        String.join("\n", List.of(lines).subList(begin, end)), header, null));
+                i = end - 1;
+                continue;
+            }
+
+            Matcher include = INCLUDE_PATTERN.matcher(line);
+            if (include.find()) {
+                Path included = resolve(document, include.group(1).trim());
+                if (included != null && Files.isRegularFile(included)) {
+                    try {
+                        collectDiagramBlocks(included, Files.readString(included), header, blocks, visited);
+                    } catch (IOException e) {
+                        // Asciidoctor reports unreadable includes itself
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the index after the block that starts at the given line
+    private int findBlockEnd(String[] lines, int start) {
+        String opening = lines[start].trim();
+        if (DELIMITER_PATTERN.matcher(opening).matches()) {
+            String closing = opening.startsWith("```") ? "```" : opening;
+            for (int i = start + 1; i < lines.length; i++) {
+                if (lines[i].trim().equals(closing)) {
+                    return i + 1;
+                }
+            }
+            return lines.length;
+        }
+
+        // Paragraph block ends at the next blank line
+        int end = start;
+        while (end < lines.length && !lines[end].isBlank()) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Extracts the attribute entries of the document header, which is the first
+     * block of lines after an optional front matter.
+     */
+    private String extractHeader(String content) {
+        String[] lines = content.split("\\r?\\n");
+        int i = 0;
+        if (lines.length > 0 && lines[0].equals("---")) {
+            i = 1;
+            while (i < lines.length && !lines[i].equals("---")) {
+                i++;
+            }
+            i++;
+        }
+        while (i < lines.length && (lines[i].isBlank() || lines[i].startsWith("//"))) {
+            i++;
+        }
+        if (i >= lines.length || !(lines[i].startsWith("= ") || ATTRIBUTE_ENTRY_PATTERN.matcher(lines[i]).matches())) {
+            return "";
+        }
+
+        List<String> entries = new ArrayList<>();
+        for (; i < lines.length && !lines[i].isBlank(); i++) {
+            if (ATTRIBUTE_ENTRY_PATTERN.matcher(lines[i]).matches()) {
+                entries.add(lines[i]);
+            }
+        }
+        return String.join("\n", entries);
+    }
+
+    private Path resolve(Path document, String target) {
+        if (target.contains("{") || target.contains("://")) {
+            return null;
+        }
+        try {
+            Path parent = document.toAbsolutePath().getParent();
+            return parent != null ? parent.resolve(target) : Path.of(target);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+}
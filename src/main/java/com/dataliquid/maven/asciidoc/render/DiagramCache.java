@@ -0,0 +1,304 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Content-addressed store of generated diagram images that can live outside the
+ * build directory and be shared by all modules of a reactor and across
+ * {@code mvn clean}.
+ * <p>
+ * Entries are keyed by a SHA-256 of the diagram type, source, referenced source
+ * file, header attributes and output format, and partitioned by the versions
+ * of the diagram tools, so upgrading a tool never serves stale images. Each
+ * entry holds the images and the asciidoctor-diagram metadata files produced
+ * for one diagram; asciidoctor-diagram still verifies its own checksum when it
+ * finds a restored image. Least recently used entries are evicted once the
+ * store exceeds its size limit.
+ */
+public class DiagramCache {
+
+    private static final String IMAGES_DIR = "images";
+    private static final String METADATA_DIR = "metadata";
+    private static final String VERSION_FILE = "versions.txt";
+    private static final String STAGING_PREFIX = ".tmp-";
+
+    // Artifacts whose versions influence the generated images
+    private static final String[] TOOL_ARTIFACTS = { "org.asciidoctor/asciidoctorj",
+            "org.asciidoctor/asciidoctorj-diagram", "org.asciidoctor/asciidoctorj-diagram-plantuml",
+            "org.asciidoctor/asciidoctorj-diagram-ditaamini", "org.asciidoctor/asciidoctorj-diagram-jsyntrax",
+            "org.asciidoctor/asciidoctorj-diagram-batik" };
+
+    private final Path partition;
+    private final Path root;
+    private final long maxSizeBytes;
+    private final Log log;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a cache rooted at the given directory.
+     *
+     * @param directory    Root directory of the store, shared between builds
+     * @param maxSizeBytes Size limit of the store in bytes
+     * @param toolVersions Versions of the diagram tools, see
+     *                     {@link #detectToolVersions(ClassLoader)}
+     * @param log          Maven logger instance
+     */
+    public DiagramCache(Path directory, long maxSizeBytes, String toolVersions, Log log) throws IOException {
+        this.root = directory;
+        this.partition = directory.resolve(sha256(toolVersions).substring(0, 16));
+        this.maxSizeBytes = maxSizeBytes;
+        this.log = log;
+
+        Files.createDirectories(partition);
+        Path versionFile = partition.resolve(VERSION_FILE);
+        if (!Files.exists(versionFile)) {
+            Files.writeString(versionFile, toolVersions + "\n");
+        }
+    }
+
+    /**
+     * Describes the versions of AsciidoctorJ and the diagram tools on the given
+     * class path.
+     */
+    public static String detectToolVersions(ClassLoader classLoader) {
+        StringBuilder versions = new StringBuilder();
+        for (String artifact : TOOL_ARTIFACTS) {
+            String resource = "META-INF/maven/" + artifact + "/pom.properties";
+            String version = "none";
+            try (InputStream in = classLoader.getResourceAsStream(resource)) {
+                if (in != null) {
+                    Properties properties = new Properties();
+                    properties.load(in);
+                    version = properties.getProperty("version", "unknown");
+                }
+            } catch (IOException e) {
+                version = "unknown";
+            }
+            versions.append(artifact).append('=').append(version).append('\n');
+        }
+        return versions.toString().trim();
+    }
+
+    /**
+     * Computes the content address of a diagram.
+     *
+     * @param  block  The diagram block
+     * @param  format Configured diagram output format
+     *
+     * @return        Hex encoded SHA-256 key
+     */
+    public static String keyFor(DiagramBlock block, String format) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, block.getType());
+        update(digest, format);
+        update(digest, block.getHeader());
+        update(digest, block.getSource());
+        if (block.getReferencedFile() != null) {
+            digest.update(Files.readAllBytes(block.getReferencedFile()));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copies the images and metadata of a cached diagram into the given
+     * directories.
+     *
+     * @return {@code true} on a cache hit
+     */
+    public boolean restore(String key, Path imagesDir, Path metadataDir) {
+        Path entry = partition.resolve(key);
+        if (!Files.isDirectory(entry)) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        try {
+            copyTree(entry.resolve(IMAGES_DIR), imagesDir);
+            copyTree(entry.resolve(METADATA_DIR), metadataDir);
+            // Mark the entry as recently used for eviction
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            // Entry evicted concurrently or incomplete, generate again
+            log.debug("Failed to restore cached diagram " + key + ": " + e.getMessage());
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Stores freshly generated images and metadata under the given key. Entries
+     * are written to a temporary directory and moved into place, so concurrent
+     * builds never see a partial entry.
+     */
+    public void publish(String key, Path imagesDir, Path metadataDir) {
+        Path entry = partition.resolve(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+
+        Path staging = partition.resolve(STAGING_PREFIX + UUID.randomUUID());
+        try {
+            copyTree(imagesDir, staging.resolve(IMAGES_DIR));
+            copyTree(metadataDir, staging.resolve(METADATA_DIR));
+            try {
+                Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(staging, entry);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Published by a concurrent build
+        } catch (IOException e) {
+            log.debug("Failed to publish diagram " + key + ": " + e.getMessage());
+        } finally {
+            deleteTree(staging);
+        }
+    }
+
+    /**
+     * Removes least recently used entries of all partitions until the store is
+     * below its size limit. Staging directories of entries being published are
+     * neither counted nor removed.
+     */
+    public void evict() {
+        List<Entry> entries = new ArrayList<>();
+        long totalSize = 0;
+        try (Stream<Path> partitions = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) partitions.filter(Files::isDirectory)::iterator) {
+                try (Stream<Path> keys = Files.list(dir)) {
+                    for (Path entry : (Iterable<Path>) keys
+                            .filter(key -> Files.isDirectory(key)
+                                    && !key.getFileName().toString().startsWith(STAGING_PREFIX))::iterator) {
+                        long size = sizeOf(entry);
+                        entries.add(new Entry(entry, Files.getLastModifiedTime(entry).toMillis(), size));
+                        totalSize += size;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to scan diagram cache: " + e.getMessage());
+            return;
+        }
+
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        int evicted = 0;
+        for (Entry entry : entries) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            deleteTree(entry.path);
+            totalSize -= entry.size;
+            evicted++;
+        }
+        log.info("Evicted " + evicted + " diagrams from the diagram cache");
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    static void copyTree(Path source, Path target) throws IOException {
+        if (!Files.isDirectory(source)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path destination = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(destination);
+                } else {
+                    // Keep the modification time, asciidoctor-diagram compares it
+                    // with the diagram source file
+                    Files
+                            .copy(file, destination, StandardCopyOption.REPLACE_EXISTING,
+                                    StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+
+    static void deleteTree(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            // Leftovers are removed by the next eviction
+        }
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String sha256(String value) {
+        MessageDigest digest = newDigest();
+        update(digest, value);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte byteValue : bytes) {
+            result.append(String.format("%02x", byteValue));
+        }
+        return result.toString();
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final long lastUsed;
+        private final long size;
+
+        private Entry(Path path, long lastUsed, long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.asciidoctor.Asciidoctor;
+
+/**
+ * Prepares the diagram images of a document before it is converted. Cached
+ * diagrams are restored from the {@link DiagramCache}; missing ones are
+ * generated by converting a minimal document that contains only the diagram,
+ * published to the cache and copied into the images directory, so that the
+ * conversion of the real document finds every image up to date.
+ * <p>
+ * Every diagram is generated into its own temporary directory, so several
+ * diagrams can be prepared concurrently with separate Asciidoctor runtimes.
+ */
+public class DiagramGenerator {
+
+    private final RenderConfiguration configuration;
+    private final DiagramCache cache;
+    private final Path imagesDir;
+    private final Path metadataDir;
+    private final Path tempDir;
+    private final String format;
+    private final Log log;
+
+    /**
+     * Creates a generator.
+     *
+     * @param configuration Render configuration used for the real conversion
+     * @param cache         Shared diagram store, may be null
+     * @param imagesDir     The imagesoutdir of the real conversion
+     * @param metadataDir   The diagram-cachedir of the real conversion
+     * @param tempDir       Directory for intermediate output
+     * @param format        Configured diagram output format
+     * @param log           Maven logger instance
+     */
+    public DiagramGenerator(RenderConfiguration configuration, DiagramCache cache, Path imagesDir, Path metadataDir,
+            Path tempDir, String format, Log log) {
+        this.configuration = configuration;
+        this.cache = cache;
+        this.imagesDir = imagesDir;
+        this.metadataDir = metadataDir;
+        this.tempDir = tempDir;
+        this.format = format;
+        this.log = log;
+    }
+
+    /**
+     * Restores or generates the image of a single diagram block.
+     *
+     * @param document    The document the block belongs to
+     * @param block       Diagram block of the document
+     * @param asciidoctor Runtime with asciidoctor-diagram loaded
+     */
+    public void prepare(Path document, DiagramBlock block, Asciidoctor asciidoctor) {
+        String key;
+        try {
+            key = DiagramCache.keyFor(block, format);
+        } catch (IOException e) {
+            log.debug("Cannot compute cache key for " + block.getType() + " diagram in " + document);
+            return;
+        }
+
+        if (cache != null && cache.restore(key, imagesDir, metadataDir)) {
+            log.debug("Restored cached " + block.getType() + " diagram " + key);
+            return;
+        }
+
+        Path workDir = null;
+        try {
+            Files.createDirectories(tempDir);
+            workDir = Files.createTempDirectory(tempDir, "diagram-");
+            Path generatedImages = workDir.resolve("images");
+            Path generatedMetadata = workDir.resolve("metadata");
+
+            asciidoctor
+                    .convert(block.toDocument(),
+                            configuration
+                                    .optionsWith(Map
+                                            .of("imagesoutdir", generatedImages.toString(), "diagram-cachedir",
+                                                    generatedMetadata.toString())));
+
+            if (!Files.isDirectory(generatedImages)) {
+                log.debug("No image generated for " + block.getType() + " diagram in " + document);
+                return;
+            }
+
+            if (cache != null) {
+                cache.publish(key, generatedImages, generatedMetadata);
+            }
+            DiagramCache.copyTree(generatedImages, imagesDir);
+            DiagramCache.copyTree(generatedMetadata, metadataDir);
+            log.debug("Generated " + block.getType() + " diagram " + key);
+        } catch (IOException | RuntimeException e) {
+            // The conversion of the document generates the diagram itself
+            log.debug("Failed to pre-generate " + block.getType() + " diagram in " + document + ": " + e.getMessage());
+        } finally {
+            if (workDir != null) {
+                DiagramCache.deleteTree(workDir);
+            }
+        }
+    }
+}
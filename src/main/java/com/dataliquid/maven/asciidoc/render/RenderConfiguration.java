@@ -0,0 +1,107 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.asciidoctor.Attributes;
+import org.asciidoctor.Options;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+
+/**
+ * Immutable Asciidoctor configuration for one render execution. The attribute
+ * map and the {@link Options} are computed once and shared by all documents.
+ * Every document is converted with the same base directory, which is also the
+ * jail for includes and generated files in SAFE mode.
+ */
+public final class RenderConfiguration {
+
+    private final SafeMode safeMode;
+    private final Map<String, Object> attributes;
+    private final File templateDir;
+    private final Path baseDir;
+    private final Options options;
+
+    /**
+     * Creates a configuration using the working directory as base directory.
+     *
+     * @param safeMode    Safe mode used for every conversion
+     * @param attributes  Document attributes shared by all documents
+     * @param templateDir Custom converter template directory, may be null
+     */
+    public RenderConfiguration(SafeMode safeMode, Map<String, Object> attributes, File templateDir) {
+        this(safeMode, attributes, templateDir, null);
+    }
+
+    /**
+     * Creates a configuration.
+     *
+     * @param safeMode    Safe mode used for every conversion
+     * @param attributes  Document attributes shared by all documents
+     * @param templateDir Custom converter template directory, may be null
+     * @param baseDir     Base directory of all documents, typically the project
+     *                    directory; null to use the working directory
+     */
+    public RenderConfiguration(SafeMode safeMode, Map<String, Object> attributes, File templateDir, Path baseDir) {
+        this.safeMode = safeMode;
+        this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+        this.templateDir = templateDir;
+        this.baseDir = baseDir != null ? baseDir.toAbsolutePath().normalize() : null;
+        this.options = buildOptions(buildAttributes(this.attributes));
+    }
+
+    /**
+     * Returns the options shared by all documents. The returned instance must
+     * not be modified.
+     */
+    public Options getOptions() {
+        return options;
+    }
+
+    /**
+     * Returns options with some shared attributes replaced, e.g. to render into
+     * a different images directory. Unlike {@link #getOptions()}, the options
+     * are built for every call.
+     */
+    public Options optionsWith(Map<String, Object> overrides) {
+        Map<String, Object> documentAttributes = new HashMap<>(attributes);
+        documentAttributes.putAll(overrides);
+        return buildOptions(buildAttributes(documentAttributes));
+    }
+
+    public SafeMode getSafeMode() {
+        return safeMode;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Gets the directory top-level includes of every document resolve against.
+     */
+    public Path getBaseDir() {
+        return baseDir != null ? baseDir : Path.of("").toAbsolutePath();
+    }
+
+    private static Attributes buildAttributes(Map<String, Object> documentAttributes) {
+        // Enable AsciidoctorJ's built-in front matter handling
+        return Attributes.builder().attributes(documentAttributes).skipFrontMatter(true).build();
+    }
+
+    private Options buildOptions(Attributes documentAttributes) {
+        OptionsBuilder optionsBuilder = Options.builder().safe(safeMode).mkDirs(true).attributes(documentAttributes);
+
+        if (baseDir != null) {
+            optionsBuilder.baseDir(baseDir.toFile());
+        }
+        if (templateDir != null) {
+            optionsBuilder.templateDirs(templateDir);
+        }
+
+        return optionsBuilder.build();
+    }
+}
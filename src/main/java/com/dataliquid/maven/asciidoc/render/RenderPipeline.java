@@ -0,0 +1,343 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Staged pipeline for rendering documents. Every stage runs on its own bounded
+ * set of threads and takes its items from a bounded queue, so I/O stages such
+ * as reading and writing overlap with CPU stages such as conversion, and a stage
+ * that falls behind blocks the stages before it instead of letting documents
+ * pile up in memory. An item leaves the pipeline after the last stage, when a
+ * stage completes it early or when a stage fails for it.
+ *
+ * @param <T> Type of the items passed through the stages
+ */
+public class RenderPipeline<T> implements AutoCloseable {
+
+    /**
+     * Work done by a stage for a single item.
+     */
+    @FunctionalInterface
+    public interface StageTask<T> {
+        /**
+         * Processes an item.
+         *
+         * @return true to pass the item on to the next stage, false if the item is
+         *         complete
+         */
+        boolean process(T item) throws Exception;
+    }
+
+    private final int queueCapacity;
+    private final Log log;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder submitted = new LongAdder();
+    private long startNanos;
+
+    /**
+     * Creates an empty pipeline.
+     *
+     * @param queueCapacity Number of items each stage queues before the previous
+     *                      stage is blocked (at least 1)
+     * @param log           Maven logger instance
+     */
+    public RenderPipeline(int queueCapacity, Log log) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Render pipeline needs a queue capacity of at least 1: "
+                    + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        this.log = log;
+    }
+
+    /**
+     * Appends a stage. Stages run in the order they were added.
+     *
+     * @param name    Name used for the stage threads and statistics
+     * @param threads Number of threads of the stage (at least 1)
+     * @param task    Work done for each item
+     */
+    public void addStage(String name, int threads, StageTask<T> task) {
+        if (!this.threads.isEmpty()) {
+            throw new IllegalStateException("Render pipeline has already been started");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Pipeline stage " + name + " needs at least one thread: " + threads);
+        }
+        stages.add(new Stage(name, threads, task));
+    }
+
+    /**
+     * Starts the threads of all stages.
+     */
+    public void start() {
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("Render pipeline has no stages");
+        }
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("Render pipeline has already been started");
+        }
+        startNanos = System.nanoTime();
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            Stage next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+            for (int t = 1; t <= stage.threads; t++) {
+                Thread thread = new Thread(() -> stage.run(next), "asciidoc-" + stage.name + "-" + t);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Passes an item to the first stage, blocking while its queue is full.
+     *
+     * @param  item The item
+     *
+     * @return      Completed with the item once it leaves the pipeline, or with
+     *              the failure of the stage it failed in
+     */
+    public Future<T> submit(T item) throws InterruptedException {
+        if (threads.isEmpty()) {
+            throw new IllegalStateException("Render pipeline has not been started");
+        }
+        Entry<T> entry = new Entry<>(item);
+        stages.get(0).put(entry);
+        submitted.increment();
+        return entry.result;
+    }
+
+    /**
+     * Gets the statistics of every stage, in stage order.
+     */
+    public List<StageStatistics> getStatistics() {
+        List<StageStatistics> statistics = new ArrayList<>();
+        for (Stage stage : stages) {
+            statistics.add(stage.statistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * Logs the latency and queue depth of every stage and the overall
+     * throughput.
+     */
+    public void logStatistics() {
+        for (StageStatistics stage : getStatistics()) {
+            log
+                    .info(String
+                            .format(Locale.ROOT,
+                                    "  %s: %d documents with %d threads, latency %.1f ms avg / %.1f ms max,"
+                                            + " queue wait %.1f ms avg, queue depth %.1f avg / %d max",
+                                    stage.getName(), stage.getDocuments(), stage.getThreads(),
+                                    stage.getAverageLatencyMillis(), stage.getMaxLatencyMillis(),
+                                    stage.getAverageWaitMillis(), stage.getAverageQueueDepth(),
+                                    stage.getMaxQueueDepth()));
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        long documents = submitted.sum();
+        log
+                .info(String
+                        .format(Locale.ROOT, "Rendered %d documents in a %d stage pipeline in %.2f s (%.1f docs/s)",
+                                documents, stages.size(), elapsedSeconds,
+                                elapsedSeconds > 0 ? documents / elapsedSeconds : 0));
+    }
+
+    /**
+     * Stops the threads of all stages. Items still in the pipeline are not
+     * processed any further.
+     */
+    @Override
+    public void close() {
+        threads.forEach(Thread::interrupt);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        try {
+            for (Thread thread : threads) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+                }
+                if (thread.isAlive()) {
+                    log.warn("Render pipeline thread " + thread.getName() + " did not terminate within 30 seconds");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        threads.clear();
+    }
+
+    private final class Stage {
+        private final String name;
+        private final int threads;
+        private final StageTask<T> task;
+        private final BlockingQueue<Entry<T>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final LongAdder documents = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder depthSum = new LongAdder();
+        private final LongAdder depthSamples = new LongAdder();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+
+        private Stage(String name, int threads, StageTask<T> task) {
+            this.name = name;
+            this.threads = threads;
+            this.task = task;
+        }
+
+        private void put(Entry<T> entry) throws InterruptedException {
+            entry.queuedNanos = System.nanoTime();
+            queue.put(entry);
+            // Sampled on arrival, including the arriving item
+            int depth = queue.size();
+            depthSum.add(depth);
+            depthSamples.increment();
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        private void run(Stage next) {
+            while (true) {
+                Entry<T> entry;
+                try {
+                    entry = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long begin = System.nanoTime();
+                waitNanos.add(begin - entry.queuedNanos);
+                boolean proceed;
+                try {
+                    proceed = task.process(entry.item);
+                } catch (Throwable e) {
+                    // The submitter waits for every item, so errors must not get lost
+                    record(begin);
+                    entry.result.completeExceptionally(e);
+                    continue;
+                }
+                record(begin);
+
+                if (!proceed || next == null) {
+                    entry.result.complete(entry.item);
+                    continue;
+                }
+                try {
+                    next.put(entry);
+                } catch (InterruptedException e) {
+                    entry.result.completeExceptionally(e);
+                    return;
+                }
+            }
+        }
+
+        private void record(long begin) {
+            long latency = System.nanoTime() - begin;
+            documents.increment();
+            busyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+
+        private StageStatistics statistics() {
+            long count = documents.sum();
+            long samples = depthSamples.sum();
+            return new StageStatistics(name, threads, count, count > 0 ? busyNanos.sum() / count : 0,
+                    maxLatencyNanos.get(), count > 0 ? waitNanos.sum() / count : 0,
+                    samples > 0 ? (double) depthSum.sum() / samples : 0, maxDepth.get());
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        // Handed over through the stage queues, which publish it to the next thread
+        private long queuedNanos;
+
+        private Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * Latency and queue depth of a single stage.
+     */
+    public static final class StageStatistics {
+        private final String name;
+        private final int threads;
+        private final long documents;
+        private final long averageLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long averageWaitNanos;
+        private final double averageQueueDepth;
+        private final int maxQueueDepth;
+
+        private StageStatistics(String name, int threads, long documents, long averageLatencyNanos,
+                long maxLatencyNanos, long averageWaitNanos, double averageQueueDepth, int maxQueueDepth) {
+            this.name = name;
+            this.threads = threads;
+            this.documents = documents;
+            this.averageLatencyNanos = averageLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.averageWaitNanos = averageWaitNanos;
+            this.averageQueueDepth = averageQueueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Gets the number of items the stage has processed, including failed ones.
+         */
+        public long getDocuments() {
+            return documents;
+        }
+
+        public double getAverageLatencyMillis() {
+            return averageLatencyNanos / 1_000_000.0;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos / 1_000_000.0;
+        }
+
+        /**
+         * Gets the average time an item waited in the queue of the stage.
+         */
+        public double getAverageWaitMillis() {
+            return averageWaitNanos / 1_000_000.0;
+        }
+
+        /**
+         * Gets the average number of items queued, sampled whenever an item
+         * arrives.
+         */
+        public double getAverageQueueDepth() {
+            return averageQueueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+    }
+}
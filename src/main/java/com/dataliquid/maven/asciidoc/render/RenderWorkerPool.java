@@ -0,0 +1,191 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.maven.plugin.logging.Log;
+import org.asciidoctor.Asciidoctor;
+
+/**
+ * Bounded pool of render workers. Every worker thread owns its own Asciidoctor
+ * instances, one per set of required Ruby libraries, obtained on first use, so
+ * conversions never share a JRuby runtime between threads and a worker only
+ * loads libraries such as asciidoctor-diagram when a task needs them.
+ */
+public class RenderWorkerPool implements AutoCloseable {
+
+    /**
+     * A unit of work executed on a worker thread with that worker's Asciidoctor
+     * instance.
+     */
+    @FunctionalInterface
+    public interface RenderTask<T> {
+        T execute(Asciidoctor asciidoctor) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final Function<List<String>, Asciidoctor> asciidoctorFactory;
+    private final BiConsumer<Asciidoctor, List<String>> asciidoctorReleaser;
+    private final Log log;
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Creates a pool with the given number of worker threads.
+     *
+     * @param threads            Number of worker threads (at least 1)
+     * @param asciidoctorFactory  Provides a fully configured Asciidoctor instance
+     *                            with the given libraries for a worker
+     * @param asciidoctorReleaser Releases a worker's instance when the pool is
+     *                            closed
+     * @param log                 Maven logger instance
+     */
+    public RenderWorkerPool(int threads, Function<List<String>, Asciidoctor> asciidoctorFactory,
+            BiConsumer<Asciidoctor, List<String>> asciidoctorReleaser, Log log) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Render worker pool needs at least one thread: " + threads);
+        }
+        this.asciidoctorFactory = asciidoctorFactory;
+        this.asciidoctorReleaser = asciidoctorReleaser;
+        this.log = log;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "asciidoc-render-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a task that needs no additional Ruby libraries.
+     */
+    public <T> Future<T> submit(RenderTask<T> task) {
+        return submit(List.of(), task);
+    }
+
+    /**
+     * Submits a task to the pool. The task receives the Asciidoctor instance of
+     * the worker thread that picks it up, with the given libraries loaded.
+     */
+    public <T> Future<T> submit(List<String> requiredLibraries, RenderTask<T> task) {
+        return executor.submit(() -> execute(requiredLibraries, task));
+    }
+
+    /**
+     * Executes a task on the calling thread, which becomes a worker of this pool
+     * with its own Asciidoctor instances. Used by callers that manage their own
+     * threads, such as the conversion stage of a {@link RenderPipeline}; those
+     * threads must have finished before the pool is closed.
+     */
+    public <T> T execute(List<String> requiredLibraries, RenderTask<T> task) throws Exception {
+        Worker worker = getOrCreateWorker();
+        Asciidoctor asciidoctor = worker.getAsciidoctor(requiredLibraries);
+        long taskStart = System.nanoTime();
+        try {
+            return task.execute(asciidoctor);
+        } finally {
+            worker.documents++;
+            worker.busyNanos += System.nanoTime() - taskStart;
+        }
+    }
+
+    private Worker getOrCreateWorker() {
+        Worker worker = currentWorker.get();
+        if (worker == null) {
+            worker = new Worker(Thread.currentThread().getName());
+            currentWorker.set(worker);
+            workers.add(worker);
+        }
+        return worker;
+    }
+
+    /**
+     * Logs the number of documents and the throughput of every worker.
+     */
+    public void logStatistics() {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        int totalDocuments = 0;
+
+        List<Worker> sortedWorkers = workers.stream().sorted((a, b) -> a.name.compareTo(b.name)).toList();
+        for (Worker worker : sortedWorkers) {
+            double busySeconds = worker.busyNanos / 1_000_000_000.0;
+            totalDocuments += worker.documents;
+            log
+                    .info(String
+                            .format(Locale.ROOT, "  %s: %d documents in %.2f s (%.1f docs/s)", worker.name,
+                                    worker.documents, busySeconds, rate(worker.documents, busySeconds)));
+        }
+
+        log
+                .info(String
+                        .format(Locale.ROOT, "Rendered %d documents with %d workers in %.2f s (%.1f docs/s)",
+                                totalDocuments, sortedWorkers.size(), elapsedSeconds,
+                                rate(totalDocuments, elapsedSeconds)));
+    }
+
+    private static double rate(int documents, double seconds) {
+        return seconds > 0 ? documents / seconds : 0;
+    }
+
+    /**
+     * Stops the worker threads and releases every Asciidoctor instance the workers
+     * obtained.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Render workers did not terminate within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Worker worker : workers) {
+            for (Map.Entry<List<String>, Asciidoctor> runtime : worker.runtimes.entrySet()) {
+                try {
+                    asciidoctorReleaser.accept(runtime.getValue(), runtime.getKey());
+                } catch (Exception e) {
+                    log.debug("Failed to release Asciidoctor of " + worker.name + ": " + e.getMessage());
+                }
+            }
+        }
+        workers.clear();
+    }
+
+    private final class Worker {
+        private final String name;
+        // Only written by the owning worker thread; read after the tasks completed
+        private final Map<List<String>, Asciidoctor> runtimes = new HashMap<>();
+        private volatile int documents;
+        private volatile long busyNanos;
+
+        private Worker(String name) {
+            this.name = name;
+        }
+
+        private Asciidoctor getAsciidoctor(List<String> requiredLibraries) {
+            Asciidoctor asciidoctor = runtimes.get(requiredLibraries);
+            if (asciidoctor == null) {
+                log.debug("Starting Asciidoctor for " + name + " with libraries " + requiredLibraries);
+                List<String> libraries = List.copyOf(requiredLibraries);
+                asciidoctor = asciidoctorFactory.apply(libraries);
+                runtimes.put(libraries, asciidoctor);
+            }
+            return asciidoctor;
+        }
+    }
+}
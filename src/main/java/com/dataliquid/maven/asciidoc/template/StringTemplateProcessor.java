@@ -16,13 +16,19 @@ import java.io.InputStream;
 import com.dataliquid.maven.asciidoc.util.IndentationUtils;
 
 public class StringTemplateProcessor {
+    private static final String PARTIAL_TEMPLATE = "partial";
+    private static final String INLINE_TEMPLATE = "inline";
+    private static final String TEMPLATE_ARGUMENTS = "html,attributes,frontMatter,metadata,context";
+
     private final Log log;
     private final String baseDir;
     private final STGroup templateGroup;
+    private final String instanceName;
 
     // Constructor that supports both file and classpath templates
     public StringTemplateProcessor(String templatePath, Log log) {
         this.log = log;
+        this.instanceName = PARTIAL_TEMPLATE;
 
         if (templatePath == null) {
             throw new IllegalArgumentException("Template path cannot be null");
@@ -54,7 +60,7 @@ public class StringTemplateProcessor {
                         this.templateGroup = new STGroupString(processedContent);
                     } else {
                         // Wrap simple content in a template definition
-                        String groupContent = "partial(html,attributes,frontMatter,metadata,context) ::= <<\n"
+                        String groupContent = PARTIAL_TEMPLATE + "(" + TEMPLATE_ARGUMENTS + ") ::= <<\n"
                                 + processedContent + "\n>>";
                         this.templateGroup = new STGroupString(groupContent);
                     }
@@ -95,7 +101,7 @@ public class StringTemplateProcessor {
                         this.templateGroup = new STGroupString(processedContent);
                     } else {
                         // Wrap simple content in a template definition
-                        String groupContent = "partial(html,attributes,frontMatter,metadata,context) ::= <<\n"
+                        String groupContent = PARTIAL_TEMPLATE + "(" + TEMPLATE_ARGUMENTS + ") ::= <<\n"
                                 + processedContent + "\n>>";
                         this.templateGroup = new STGroupString(groupContent);
                     }
@@ -113,6 +119,7 @@ public class StringTemplateProcessor {
     public StringTemplateProcessor(File templateDir, Log log) {
         this.log = log;
         this.baseDir = templateDir.getAbsolutePath();
+        this.instanceName = PARTIAL_TEMPLATE;
 
         if (templateDir == null || !templateDir.exists()) {
             throw new IllegalArgumentException("Template directory does not exist: " + templateDir);
@@ -125,6 +132,90 @@ public class StringTemplateProcessor {
         this.templateGroup = null; // We'll load templates individually in process()
     }
 
+    // Constructor for an already compiled template group
+    private StringTemplateProcessor(STGroup templateGroup, String instanceName, Log log) {
+        this.log = log;
+        this.baseDir = "";
+        this.templateGroup = templateGroup;
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * Compiles an inline template once so that it can be rendered for many
+     * documents with {@link #render(DocumentContext)}.
+     *
+     * @param  templateContent The inline template source
+     * @param  log             Maven logger instance
+     *
+     * @return                 Processor holding the compiled inline template
+     */
+    public static StringTemplateProcessor forInlineTemplate(String templateContent, Log log) {
+        if (templateContent == null || templateContent.trim().isEmpty()) {
+            throw new IllegalArgumentException("Template content cannot be null or empty");
+        }
+
+        log.debug("Compiling inline template");
+
+        // Apply smart indentation removal that preserves relative indentation
+        String processedContent = IndentationUtils.removeCommonIndentation(templateContent);
+
+        try {
+            // Create STGroup with error listener BEFORE creating template
+            STGroup group = new STGroup('$', '$');
+            group.setListener(new DetailedSTErrorListener(processedContent, "inline-template", log));
+
+            // Define template in the group with parameters - this will trigger compile-time
+            // errors if syntax is invalid
+            group.defineTemplate(INLINE_TEMPLATE, TEMPLATE_ARGUMENTS, processedContent);
+            return new StringTemplateProcessor(group, INLINE_TEMPLATE, log);
+        } catch (STException e) {
+            log.error("Template syntax error in inline template", e);
+            throw new RuntimeException("Inline template processing failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renders the compiled template of this processor. Safe to call from several
+     * threads; every call works on its own template instance.
+     *
+     * @param  context The document to render
+     *
+     * @return         The rendered output
+     */
+    public String render(DocumentContext context) {
+        if (templateGroup == null) {
+            throw new IllegalStateException("No compiled template available, use process() for template directories");
+        }
+
+        ST template;
+        // Instance lookup may lazily load the group, so guard it
+        synchronized (templateGroup) {
+            template = templateGroup.getInstanceOf(instanceName);
+        }
+
+        if (template == null) {
+            throw new IllegalStateException("Failed to create template instance: " + instanceName);
+        }
+
+        try {
+            return renderWithContext(template, context);
+        } catch (STException e) {
+            log.error("Template syntax error in: " + instanceName, e);
+            throw new RuntimeException("Template processing failed for " + instanceName + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String renderWithContext(ST template, DocumentContext context) {
+        // Add template data
+        template.add("html", context.getHtml());
+        template.add("attributes", context.getAttributes());
+        template.add("frontMatter", context.getFrontMatter());
+        template.add("metadata", context.getMetadata());
+        template.add("context", context);
+
+        return template.render();
+    }
+
     public String process(String templateName, DocumentContext context) {
         if (templateName == null || templateName.trim().isEmpty()) {
             throw new IllegalArgumentException("Template name cannot be null or empty");
@@ -138,7 +229,7 @@ public class StringTemplateProcessor {
 
             if (templateGroup != null) {
                 // Get template from group - always use "partial" as the template name
-                template = templateGroup.getInstanceOf("partial");
+                template = templateGroup.getInstanceOf(PARTIAL_TEMPLATE);
             } else {
                 // Load template from file
                 Path templatePath = Paths.get(baseDir, templateName);
@@ -157,14 +248,7 @@ public class StringTemplateProcessor {
                 throw new IllegalArgumentException("Template not found: " + templateName);
             }
 
-            // Add template data
-            template.add("html", context.getHtml());
-            template.add("attributes", context.getAttributes());
-            template.add("frontMatter", context.getFrontMatter());
-            template.add("metadata", context.getMetadata());
-            template.add("context", context);
-
-            return template.render();
+            return renderWithContext(template, context);
         } catch (IOException e) {
             throw new RuntimeException("Failed to load template: " + templateName, e);
         } catch (STException e) {
@@ -193,21 +277,14 @@ public class StringTemplateProcessor {
 
             // Define template in the group with parameters - this will trigger compile-time
             // errors if syntax is invalid
-            group.defineTemplate("inline", "html,attributes,frontMatter,metadata,context", processedContent);
-            ST template = group.getInstanceOf("inline");
+            group.defineTemplate(INLINE_TEMPLATE, TEMPLATE_ARGUMENTS, processedContent);
+            ST template = group.getInstanceOf(INLINE_TEMPLATE);
 
             if (template == null) {
                 throw new IllegalStateException("Failed to create template instance");
             }
 
-            // Add template data
-            template.add("html", context.getHtml());
-            template.add("attributes", context.getAttributes());
-            template.add("frontMatter", context.getFrontMatter());
-            template.add("metadata", context.getMetadata());
-            template.add("context", context);
-
-            return template.render();
+            return renderWithContext(template, context);
         } catch (STException e) {
             log.error("Template syntax error in inline template", e);
             throw new RuntimeException("Inline template processing failed: " + e.getMessage(), e);
@@ -0,0 +1,48 @@
+package com.dataliquid.maven.asciidoc.template;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Registry of compiled StringTemplate processors for one mojo execution. Each
+ * template file or inline template is loaded and compiled exactly once;
+ * rendering a document only creates a new template instance.
+ */
+public class TemplateRegistry {
+
+    private final Map<String, StringTemplateProcessor> fileTemplates = new ConcurrentHashMap<>();
+    private final Map<String, StringTemplateProcessor> inlineTemplates = new ConcurrentHashMap<>();
+    private final Log log;
+
+    public TemplateRegistry(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns the compiled processor for a file system or classpath template,
+     * compiling it on first use.
+     *
+     * @param  templatePath Path of the template file or classpath resource
+     *
+     * @return              The compiled template processor
+     */
+    public StringTemplateProcessor getFileTemplate(String templatePath) {
+        return fileTemplates.computeIfAbsent(templatePath, path -> new StringTemplateProcessor(path, log));
+    }
+
+    /**
+     * Returns the compiled processor for an inline template, compiling it on first
+     * use.
+     *
+     * @param  templateContent The inline template source
+     *
+     * @return                 The compiled template processor
+     */
+    public StringTemplateProcessor getInlineTemplate(String templateContent) {
+        return inlineTemplates
+                .computeIfAbsent(templateContent,
+                        content -> StringTemplateProcessor.forInlineTemplate(content, log));
+    }
+}
@@ -0,0 +1,336 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.maven.SessionScoped;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.asciidoctor.Asciidoctor;
+
+import com.dataliquid.maven.asciidoc.parser.FrontMatterParser;
+
+/**
+ * State shared by all AsciiDoc goals of one Maven session, so that lint,
+ * validate and render bound in the same build scan the source tree once and
+ * boot a single Asciidoctor runtime.
+ * <p>
+ * The runtime is leased exclusively: a goal that finds it in use (parallel
+ * reactor builds, render workers) creates its own. The runtimes kept by the
+ * context are shut down when the session ends. Maven does not dispose
+ * session scoped components, so the context listens for the end of the
+ * session itself; a cleaner shuts the runtimes down should the context be
+ * garbage collected without that event.
+ */
+@Named
+@SessionScoped
+public class AsciiDocSessionContext {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Map<String, List<Path>> scannedFiles = new HashMap<>();
+    private final IdleRuntimes idleRuntimes = new IdleRuntimes();
+    private FrontMatterParser frontMatterParser;
+
+    public AsciiDocSessionContext() {
+        CLEANER.register(this, idleRuntimes);
+    }
+
+    /**
+     * Creates the context of a Maven session and registers it for the end of
+     * the session.
+     *
+     * @param session The session the context belongs to
+     */
+    @Inject
+    public AsciiDocSessionContext(MavenSession session) {
+        this();
+        MavenExecutionRequest request = session.getRequest();
+        request.setExecutionListener(new SessionEndListener(request.getExecutionListener(), idleRuntimes));
+    }
+
+    /**
+     * Returns the AsciiDoc files below the source directory, scanning the
+     * directory only the first time a combination of directory and patterns is
+     * requested in this session.
+     *
+     * @param  sourceDirectory Base directory to scan
+     * @param  includes        Include patterns
+     * @param  excludes        Exclude patterns
+     *
+     * @return                 Matched files, in scan order
+     */
+    public synchronized List<Path> getMatchedFiles(File sourceDirectory, String[] includes, String[] excludes)
+            throws IOException {
+        return getMatchedFiles(sourceDirectory, includes, excludes, false, null, null);
+    }
+
+    /**
+     * Returns the AsciiDoc files below the source directory like
+     * {@link #getMatchedFiles(File, String[], String[])}. The first scan of the
+     * session reuses the directory listings of earlier builds kept in the given
+     * file.
+     *
+     * @param  sourceDirectory Base directory to scan
+     * @param  includes        Include patterns
+     * @param  excludes        Exclude patterns
+     * @param  caseSensitive   {@code true} to match names exactly
+     * @param  scanCache       File keeping directory listings between builds,
+     *                         may be null
+     * @param  log             Maven logger instance, may be null without cache
+     *
+     * @return                 Matched files, in scan order
+     */
+    public synchronized List<Path> getMatchedFiles(File sourceDirectory, String[] includes, String[] excludes,
+            boolean caseSensitive, Path scanCache, Log log) throws IOException {
+        String key = sourceDirectory.getAbsolutePath() + "|" + Arrays.toString(includes) + "|"
+                + Arrays.toString(excludes) + "|" + caseSensitive;
+        List<Path> files = scannedFiles.get(key);
+        if (files == null) {
+            FilePatternMatcher matcher = new FilePatternMatcher(sourceDirectory, includes, excludes, caseSensitive);
+            matcher.setParallel(true);
+            if (scanCache != null) {
+                matcher.setScanCache(scanCache, log);
+            }
+            files = matcher.getMatchedFiles().stream().map(File::toPath).collect(Collectors.toUnmodifiableList());
+            scannedFiles.put(key, files);
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Returns the front matter parser shared by all goals of this session.
+     */
+    public synchronized FrontMatterParser getFrontMatterParser(Log log) {
+        if (frontMatterParser == null) {
+            frontMatterParser = new FrontMatterParser(log);
+        }
+        return frontMatterParser;
+    }
+
+    /**
+     * Leases the session's Asciidoctor runtime, creating it with the factory if
+     * the session holds none for the key. A runtime that was booted with fewer
+     * Ruby libraries than requested is handed out as well; the caller loads the
+     * missing libraries itself.
+     *
+     * @param  key     Describes the requested runtime configuration
+     * @param  factory Creates a new runtime when no idle one matches
+     *
+     * @return         A runtime leased exclusively to the caller
+     */
+    public Asciidoctor acquireAsciidoctor(AsciidoctorRuntimeCache.RuntimeKey key, Supplier<Asciidoctor> factory) {
+        synchronized (idleRuntimes) {
+            Iterator<Map.Entry<AsciidoctorRuntimeCache.RuntimeKey, Asciidoctor>> iterator = idleRuntimes.runtimes
+                    .entrySet()
+                    .iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<AsciidoctorRuntimeCache.RuntimeKey, Asciidoctor> entry = iterator.next();
+                if (entry.getKey().canServe(key)) {
+                    iterator.remove();
+                    return entry.getValue();
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Hands a runtime back to the session. The session keeps one idle runtime
+     * per key.
+     *
+     * @param  key         Configuration the runtime now has
+     * @param  asciidoctor The runtime to keep
+     *
+     * @return             {@code true} if the session took ownership,
+     *                     {@code false} if the caller must dispose of it
+     */
+    public boolean releaseAsciidoctor(AsciidoctorRuntimeCache.RuntimeKey key, Asciidoctor asciidoctor) {
+        synchronized (idleRuntimes) {
+            return idleRuntimes.runtimes.putIfAbsent(key, asciidoctor) == null;
+        }
+    }
+
+    /**
+     * Shuts down the idle runtimes kept by the session. Runtimes released
+     * afterwards are kept again.
+     */
+    public void close() {
+        idleRuntimes.run();
+    }
+
+    // Must not reference the context, otherwise the context never becomes
+    // phantom reachable and the cleanup never runs
+    private static final class IdleRuntimes implements Runnable {
+        private final Map<AsciidoctorRuntimeCache.RuntimeKey, Asciidoctor> runtimes = new HashMap<>();
+
+        @Override
+        public void run() {
+            List<Asciidoctor> idle;
+            synchronized (this) {
+                idle = new ArrayList<>(runtimes.values());
+                runtimes.clear();
+            }
+            for (Asciidoctor asciidoctor : idle) {
+                try {
+                    asciidoctor.shutdown();
+                } catch (RuntimeException e) {
+                    // Nothing left to clean up for a runtime that failed to shut down
+                }
+            }
+        }
+    }
+
+    /**
+     * Forwards all events to the listener Maven configured and shuts down the
+     * idle runtimes once the session has ended.
+     */
+    private static final class SessionEndListener implements ExecutionListener {
+        private final ExecutionListener delegate;
+        private final IdleRuntimes idleRuntimes;
+
+        private SessionEndListener(ExecutionListener delegate, IdleRuntimes idleRuntimes) {
+            this.delegate = delegate;
+            this.idleRuntimes = idleRuntimes;
+        }
+
+        @Override
+        public void sessionEnded(ExecutionEvent event) {
+            try {
+                if (delegate != null) {
+                    delegate.sessionEnded(event);
+                }
+            } finally {
+                idleRuntimes.run();
+            }
+        }
+
+        @Override
+        public void projectDiscoveryStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.projectDiscoveryStarted(event);
+            }
+        }
+
+        @Override
+        public void sessionStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.sessionStarted(event);
+            }
+        }
+
+        @Override
+        public void projectSkipped(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.projectSkipped(event);
+            }
+        }
+
+        @Override
+        public void projectStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.projectStarted(event);
+            }
+        }
+
+        @Override
+        public void projectSucceeded(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.projectSucceeded(event);
+            }
+        }
+
+        @Override
+        public void projectFailed(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.projectFailed(event);
+            }
+        }
+
+        @Override
+        public void mojoSkipped(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.mojoSkipped(event);
+            }
+        }
+
+        @Override
+        public void mojoStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.mojoStarted(event);
+            }
+        }
+
+        @Override
+        public void mojoSucceeded(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.mojoSucceeded(event);
+            }
+        }
+
+        @Override
+        public void mojoFailed(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.mojoFailed(event);
+            }
+        }
+
+        @Override
+        public void forkStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkStarted(event);
+            }
+        }
+
+        @Override
+        public void forkSucceeded(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkSucceeded(event);
+            }
+        }
+
+        @Override
+        public void forkFailed(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkFailed(event);
+            }
+        }
+
+        @Override
+        public void forkedProjectStarted(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkedProjectStarted(event);
+            }
+        }
+
+        @Override
+        public void forkedProjectSucceeded(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkedProjectSucceeded(event);
+            }
+        }
+
+        @Override
+        public void forkedProjectFailed(ExecutionEvent event) {
+            if (delegate != null) {
+                delegate.forkedProjectFailed(event);
+            }
+        }
+    }
+}
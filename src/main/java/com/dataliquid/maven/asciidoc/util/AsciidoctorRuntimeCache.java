@@ -0,0 +1,226 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.asciidoctor.Asciidoctor;
+
+/**
+ * JVM-wide cache of warm Asciidoctor runtimes for long-lived JVMs such as the
+ * Maven daemon or IDE embedded builds. Runtimes are leased exclusively, returned
+ * to the cache after use and shut down when they are evicted or the JVM exits.
+ */
+public final class AsciidoctorRuntimeCache {
+
+    private static final AsciidoctorRuntimeCache INSTANCE = new AsciidoctorRuntimeCache();
+
+    // Idle runtimes, least recently used first
+    private final Deque<IdleRuntime> idleRuntimes = new ArrayDeque<>();
+    private final Map<Asciidoctor, RuntimeKey> leasedRuntimes = new IdentityHashMap<>();
+    private int maxIdleRuntimes = 2;
+    private boolean shutdownHookRegistered;
+
+    AsciidoctorRuntimeCache() {
+    }
+
+    public static AsciidoctorRuntimeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the number of idle runtimes kept warm. Surplus runtimes are shut down
+     * immediately.
+     *
+     * @param maxIdleRuntimes Maximum number of idle runtimes
+     */
+    public void setMaxIdleRuntimes(int maxIdleRuntimes) {
+        List<Asciidoctor> evicted;
+        synchronized (this) {
+            this.maxIdleRuntimes = Math.max(0, maxIdleRuntimes);
+            evicted = evictSurplus();
+        }
+        shutdownAll(evicted);
+    }
+
+    /**
+     * Leases a runtime for the given key. A warm idle runtime is reused if one
+     * exists, otherwise a new one is created with the factory.
+     *
+     * @param  key     Describes the runtime configuration
+     * @param  factory Creates a new runtime when none is idle
+     *
+     * @return         A runtime leased exclusively to the caller
+     */
+    public Asciidoctor acquire(RuntimeKey key, Supplier<Asciidoctor> factory) {
+        synchronized (this) {
+            Iterator<IdleRuntime> iterator = idleRuntimes.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleRuntime idle = iterator.next();
+                if (idle.key.equals(key)) {
+                    iterator.remove();
+                    leasedRuntimes.put(idle.asciidoctor, key);
+                    return idle.asciidoctor;
+                }
+            }
+        }
+
+        // Booting a runtime takes seconds, do it outside the lock
+        Asciidoctor asciidoctor = factory.get();
+        synchronized (this) {
+            leasedRuntimes.put(asciidoctor, key);
+            registerShutdownHook();
+        }
+        return asciidoctor;
+    }
+
+    /**
+     * Returns a leased runtime to the cache.
+     *
+     * @param  asciidoctor The runtime to return
+     *
+     * @return             {@code true} if the runtime was leased from this cache,
+     *                     {@code false} if the caller still owns it
+     */
+    public boolean release(Asciidoctor asciidoctor) {
+        List<Asciidoctor> evicted;
+        synchronized (this) {
+            RuntimeKey key = leasedRuntimes.remove(asciidoctor);
+            if (key == null) {
+                return false;
+            }
+            idleRuntimes.addLast(new IdleRuntime(key, asciidoctor));
+            evicted = evictSurplus();
+        }
+        shutdownAll(evicted);
+        return true;
+    }
+
+    /**
+     * Shuts down a leased runtime that must not be reused, e.g. because loading a
+     * library into it failed.
+     *
+     * @param asciidoctor The runtime to shut down
+     */
+    public void discard(Asciidoctor asciidoctor) {
+        synchronized (this) {
+            leasedRuntimes.remove(asciidoctor);
+        }
+        shutdownAll(List.of(asciidoctor));
+    }
+
+    /**
+     * Shuts down all idle runtimes. Leased runtimes are shut down when they are
+     * released.
+     */
+    public void clear() {
+        List<Asciidoctor> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (IdleRuntime idle : idleRuntimes) {
+                evicted.add(idle.asciidoctor);
+            }
+            idleRuntimes.clear();
+        }
+        shutdownAll(evicted);
+    }
+
+    /**
+     * Gets the number of idle runtimes.
+     *
+     * @return Number of idle runtimes
+     */
+    public synchronized int size() {
+        return idleRuntimes.size();
+    }
+
+    private List<Asciidoctor> evictSurplus() {
+        List<Asciidoctor> evicted = new ArrayList<>();
+        while (idleRuntimes.size() > maxIdleRuntimes) {
+            evicted.add(idleRuntimes.removeFirst().asciidoctor);
+        }
+        return evicted;
+    }
+
+    private void shutdownAll(List<Asciidoctor> runtimes) {
+        for (Asciidoctor asciidoctor : runtimes) {
+            try {
+                asciidoctor.shutdown();
+            } catch (RuntimeException e) {
+                // Nothing left to clean up for a runtime that failed to shut down
+            }
+        }
+    }
+
+    private void registerShutdownHook() {
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::clear, "asciidoctor-runtime-cache-shutdown"));
+            shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * Identifies runtimes that can be used interchangeably: same class loader
+     * (and therefore same AsciidoctorJ version and registered extensions), same
+     * safe mode and same required Ruby libraries.
+     */
+    public static final class RuntimeKey {
+        private final ClassLoader classLoader;
+        private final String safeMode;
+        private final List<String> requiredLibraries;
+
+        public RuntimeKey(ClassLoader classLoader, String safeMode, List<String> requiredLibraries) {
+            this.classLoader = classLoader;
+            this.safeMode = safeMode != null ? safeMode.toUpperCase() : null;
+            this.requiredLibraries = requiredLibraries.stream().sorted().distinct().toList();
+        }
+
+        /**
+         * Checks whether a runtime described by this key can be handed to a caller
+         * requesting {@code requested}: same class loader and safe mode, and no
+         * Ruby library the caller did not ask for.
+         */
+        public boolean canServe(RuntimeKey requested) {
+            return classLoader == requested.classLoader && Objects.equals(safeMode, requested.safeMode)
+                    && requested.requiredLibraries.containsAll(requiredLibraries);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof RuntimeKey)) {
+                return false;
+            }
+            RuntimeKey that = (RuntimeKey) other;
+            return classLoader == that.classLoader && Objects.equals(safeMode, that.safeMode)
+                    && requiredLibraries.equals(that.requiredLibraries);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(classLoader), safeMode, requiredLibraries);
+        }
+
+        @Override
+        public String toString() {
+            return "RuntimeKey[safeMode=" + safeMode + ", requiredLibraries=" + requiredLibraries + "]";
+        }
+    }
+
+    private static final class IdleRuntime {
+        private final RuntimeKey key;
+        private final Asciidoctor asciidoctor;
+
+        private IdleRuntime(RuntimeKey key, Asciidoctor asciidoctor) {
+            this.key = key;
+            this.asciidoctor = asciidoctor;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprint of the configuration that affects every rendered document, such
+ * as attributes, output options, templates and tool versions. Each setting is
+ * recorded as a separate hash so that a change can be reported by name.
+ */
+public class ConfigurationFingerprint {
+
+    private static final String SHA_256_ALGORITHM = "SHA-256";
+
+    private final Map<String, String> entries = new TreeMap<>();
+
+    /**
+     * Records a configuration value. Maps are recorded in key order, so the
+     * fingerprint does not depend on the iteration order of the configuration.
+     *
+     * @param name  Name of the setting
+     * @param value The configured value, may be null
+     */
+    public void put(String name, Object value) {
+        entries.put(name, hash(normalize(value).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Records the content of a file or of all files below a directory. A missing
+     * file is recorded as such.
+     *
+     * @param name Name of the setting
+     * @param path File or directory, may be null
+     */
+    public void putFile(String name, Path path) throws IOException {
+        if (path == null || !Files.exists(path)) {
+            put(name, null);
+            return;
+        }
+
+        MessageDigest digest = newDigest();
+        if (Files.isDirectory(path)) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(path)) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                digest.update(path.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+            }
+        } else {
+            digest.update(Files.readAllBytes(path));
+        }
+        entries.put(name, toHex(digest.digest()));
+    }
+
+    /**
+     * Records the content of a class path resource. A missing resource is
+     * recorded as such.
+     *
+     * @param name        Name of the setting
+     * @param classLoader Class loader to load the resource from
+     * @param resource    Resource path without leading slash
+     */
+    public void putResource(String name, ClassLoader classLoader, String resource) throws IOException {
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                put(name, null);
+            } else {
+                entries.put(name, hash(in.readAllBytes()));
+            }
+        }
+    }
+
+    /**
+     * Gets the recorded settings.
+     *
+     * @return Setting names mapped to the hash of their value
+     */
+    public Map<String, String> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private static String normalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, String> sorted = new TreeMap<>();
+            ((Map<?, ?>) value).forEach((key, entry) -> sorted.put(String.valueOf(key), normalize(entry)));
+            return sorted.toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private static String hash(byte[] content) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(SHA_256_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte byteValue : bytes) {
+            result.append(String.format("%02x", byteValue));
+        }
+        return result.toString();
+    }
+}
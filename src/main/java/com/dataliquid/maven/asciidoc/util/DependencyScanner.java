@@ -0,0 +1,282 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the local files a document depends on: files it includes, directly or
+ * through other includes, and the images and diagram sources referenced by
+ * block and inline macros. Attribute references in targets are resolved with
+ * the configured attributes and the attribute entries of the scanned files.
+ * Includes of the document itself are resolved against the base directory it
+ * is converted with, nested includes against the directory of the including
+ * file, as Asciidoctor does.
+ * <p>
+ * Conditional preprocessor directives (ifdef, ifndef, ifeval) are not
+ * evaluated: the targets of every branch are dependencies, and an attribute
+ * entry in any branch is a candidate value of the attribute. Only targets
+ * referencing an attribute without any value are unresolved.
+ */
+public class DependencyScanner {
+
+    private static final Pattern ATTRIBUTE_ENTRY_PATTERN = Pattern
+            .compile("^:([\\w-]+):[ \\t]*(.*?)[ \\t]*$", Pattern.MULTILINE);
+
+    // include::partials/_legal.adoc[], image::logo.png[], plantuml::flow.puml[], ...
+    private static final Pattern BLOCK_MACRO_PATTERN = Pattern
+            .compile("^[ \\t]*([a-z][\\w-]*)::([^\\s\\[]+)\\[", Pattern.MULTILINE);
+
+    private static final Pattern INLINE_IMAGE_PATTERN = Pattern.compile("(?<![\\w:])image:([^\\s\\[:][^\\s\\[]*)\\[");
+
+    private static final Set<String> CONDITIONAL_DIRECTIVES = Set.of("ifdef", "ifndef", "endif");
+
+    private static final Pattern ATTRIBUTE_REFERENCE_PATTERN = Pattern.compile("\\{([\\w-]+)\\}");
+
+    private final Map<String, String> attributes = new HashMap<>();
+    private final Function<Path, Path> baseDirectories;
+
+    public DependencyScanner() {
+        this(Map.of());
+    }
+
+    /**
+     * Creates a scanner for documents converted with the directory of the
+     * document as base directory.
+     *
+     * @param attributes Configured document attributes
+     */
+    public DependencyScanner(Map<String, Object> attributes) {
+        this(attributes, Path::getParent);
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param attributes      Configured document attributes
+     * @param baseDirectories Gets the base directory a document is converted
+     *                        with from its absolute path
+     */
+    public DependencyScanner(Map<String, Object> attributes, Function<Path, Path> baseDirectories) {
+        attributes.forEach((key, value) -> this.attributes.put(key, value != null ? value.toString() : ""));
+        this.baseDirectories = baseDirectories;
+    }
+
+    /**
+     * Scans a document and the files it includes.
+     *
+     * @param  document The document to scan
+     *
+     * @return          The dependencies of the document
+     */
+    public Dependencies scan(Path document) throws IOException {
+        return scan(document, Files.readAllBytes(document));
+    }
+
+    /**
+     * Scans a document that was already read, and the files it includes.
+     *
+     * @param  document The document to scan
+     * @param  content  Content of the document
+     *
+     * @return          The dependencies of the document
+     */
+    public Dependencies scan(Path document, byte[] content) {
+        Path absolute = document.toAbsolutePath().normalize();
+        Map<String, Set<String>> documentAttributes = new HashMap<>();
+        attributes.forEach((name, value) -> documentAttributes.put(name, Set.of(value)));
+        // Converted from a string, so docdir is the base directory
+        Path docdir = baseDirectories.apply(absolute);
+        documentAttributes.put("docdir", Set.of(docdir != null ? docdir.toString() : ""));
+
+        Dependencies dependencies = new Dependencies();
+        scan(absolute, docdir, docdir, decodeForScanning(content), documentAttributes, dependencies,
+                new LinkedHashSet<>());
+        return dependencies;
+    }
+
+    private void scan(Path file, Path includeBase, Path docdir, String content,
+            Map<String, Set<String>> documentAttributes, Dependencies dependencies, Set<Path> visited) {
+        if (!visited.add(file)) {
+            return;
+        }
+
+        Matcher entries = ATTRIBUTE_ENTRY_PATTERN.matcher(content);
+        while (entries.find()) {
+            // Configured attributes cannot be changed by the document
+            if (!attributes.containsKey(entries.group(1))) {
+                documentAttributes
+                        .computeIfAbsent(entries.group(1), name -> new LinkedHashSet<>())
+                        .add(entries.group(2));
+            }
+        }
+
+        Matcher macros = BLOCK_MACRO_PATTERN.matcher(content);
+        while (macros.find()) {
+            String name = macros.group(1);
+            if (CONDITIONAL_DIRECTIVES.contains(name)) {
+                // The target of ifdef::env-site[] is an attribute name
+                continue;
+            }
+            Set<String> targets = resolveAttributes(macros.group(2), documentAttributes);
+            if (targets == null) {
+                dependencies.unresolved.add(macros.group(2));
+                continue;
+            }
+            for (String target : targets) {
+                if (isRemote(target)) {
+                    continue;
+                } else if ("include".equals(name)) {
+                    addInclude(target, includeBase, docdir, documentAttributes, dependencies, visited);
+                } else if ("image".equals(name)) {
+                    addImage(target, file, docdir, documentAttributes, dependencies);
+                } else {
+                    addReference(target, file, docdir, dependencies);
+                }
+            }
+        }
+
+        Matcher images = INLINE_IMAGE_PATTERN.matcher(content);
+        while (images.find()) {
+            Set<String> targets = resolveAttributes(images.group(1), documentAttributes);
+            if (targets == null) {
+                dependencies.unresolved.add(images.group(1));
+                continue;
+            }
+            for (String target : targets) {
+                if (!isRemote(target)) {
+                    addImage(target, file, docdir, documentAttributes, dependencies);
+                }
+            }
+        }
+    }
+
+    private void addInclude(String target, Path includeBase, Path docdir, Map<String, Set<String>> documentAttributes,
+            Dependencies dependencies, Set<Path> visited) {
+        Path included = resolve(includeBase, target);
+        if (included == null) {
+            dependencies.unresolved.add(target);
+            return;
+        }
+        dependencies.files.add(included);
+        if (Files.isRegularFile(included)) {
+            try {
+                scan(included, included.getParent(), docdir, readForScanning(included), documentAttributes,
+                        dependencies, visited);
+            } catch (IOException e) {
+                // Recorded as a dependency, a change is still detected
+            }
+        }
+    }
+
+    private void addImage(String target, Path file, Path docdir, Map<String, Set<String>> documentAttributes,
+            Dependencies dependencies) {
+        // Images are resolved against the imagesdir of the main document
+        for (String imagesdir : documentAttributes.getOrDefault("imagesdir", Set.of(""))) {
+            Path base = docdir;
+            if (!imagesdir.isEmpty() && !isRemote(imagesdir)) {
+                base = resolve(docdir, imagesdir);
+            }
+            addReference(target, file, base, dependencies);
+        }
+    }
+
+    private void addReference(String target, Path file, Path base, Dependencies dependencies) {
+        Path primary = resolve(base, target);
+        if (primary == null) {
+            dependencies.unresolved.add(target);
+            return;
+        }
+        if (!Files.exists(primary)) {
+            // Fall back to the directory of the referencing file
+            Path sibling = resolve(file.getParent(), target);
+            if (sibling != null && Files.exists(sibling)) {
+                primary = sibling;
+            }
+        }
+        dependencies.files.add(primary);
+    }
+
+    /**
+     * Expands the attribute references of a target with every candidate value.
+     * Returns null if a reference has no value.
+     */
+    private static Set<String> resolveAttributes(String target, Map<String, Set<String>> documentAttributes) {
+        Matcher reference = ATTRIBUTE_REFERENCE_PATTERN.matcher(target);
+        if (!reference.find()) {
+            return target.indexOf('{') < 0 ? Set.of(target) : null;
+        }
+        Set<String> values = documentAttributes.get(reference.group(1));
+        if (values == null) {
+            return null;
+        }
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value.indexOf('{') >= 0) {
+                return null;
+            }
+            String candidate = target.substring(0, reference.start()) + value + target.substring(reference.end());
+            Set<String> candidates = resolveAttributes(candidate, documentAttributes);
+            if (candidates == null) {
+                return null;
+            }
+            resolved.addAll(candidates);
+        }
+        return resolved;
+    }
+
+    private static boolean isRemote(String target) {
+        return target.contains("://") || target.startsWith("data:");
+    }
+
+    private static Path resolve(Path base, String target) {
+        try {
+            Path path = base != null ? base.resolve(target) : Path.of(target);
+            return path.toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static String readForScanning(Path file) throws IOException {
+        return decodeForScanning(Files.readAllBytes(file));
+    }
+
+    // Unlike Files.readString, malformed input is replaced instead of failing
+    private static String decodeForScanning(byte[] content) {
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Dependencies of a document.
+     */
+    public static final class Dependencies {
+        private final Set<Path> files = new LinkedHashSet<>();
+        private final Set<String> unresolved = new LinkedHashSet<>();
+
+        /**
+         * Local files the document depends on, including files that do not exist
+         * yet.
+         */
+        public Set<Path> getFiles() {
+            return files;
+        }
+
+        /**
+         * Targets that could not be resolved statically. A document with such
+         * targets is always regenerated.
+         */
+        public Set<String> getUnresolved() {
+            return unresolved;
+        }
+    }
+}
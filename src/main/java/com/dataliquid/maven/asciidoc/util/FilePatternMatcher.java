@@ -1,42 +1,540 @@
 package com.dataliquid.maven.asciidoc.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.apache.maven.plugin.logging.Log;
 
+/**
+ * Finds the files below a base directory that match Ant style include and
+ * exclude patterns, with the semantics of the Plexus {@code DirectoryScanner}:
+ * {@code **} matches any number of directories, {@code *} and {@code ?} match
+ * within a single name, a pattern ending with {@code /} matches everything
+ * below that directory, and {@code %regex[...]} patterns are matched against
+ * the relative path.
+ *
+ * <p>
+ * Patterns are compiled once. Directories are not entered if an exclude
+ * pattern covers everything below them or no include pattern can match below
+ * them, so excluded trees such as {@code node_modules} cost a single directory
+ * entry. Matched files are returned sorted by their relative path.
+ * </p>
+ *
+ * <p>
+ * With a scan cache, the listing of every scanned directory is kept between
+ * builds together with the modification time of the directory. Adding,
+ * removing or renaming an entry changes that time, so a directory is only
+ * listed again if its modification time differs; scanning an unchanged tree
+ * reads the attributes of its directories and nothing else.
+ * </p>
+ */
 public class FilePatternMatcher {
 
+    private static final String REGEX_PREFIX = "%regex[";
+    private static final String ANT_PREFIX = "%ant[";
+    private static final String PATTERNS_KEY = "patterns";
+    // Directories modified this recently may still change within the timestamp
+    // granularity of the file system, so their listing is not kept
+    private static final long RACY_INTERVAL_MILLIS = 2000;
+    private static final char DIRECTORY_ENTRY = 'd';
+    private static final char FILE_ENTRY = 'f';
+
     private final File baseDirectory;
-    private final String[] includes;
-    private final String[] excludes;
+    private final List<PathPattern> includes;
+    private final List<PathPattern> excludes;
+    // Identifies the patterns a scan cache was written for
+    private final String patterns;
+    private boolean parallel;
+    private Path scanCacheFile;
+    private Log log;
 
     public FilePatternMatcher(File baseDirectory, String[] includes, String[] excludes) {
+        this(baseDirectory, includes, excludes, false);
+    }
+
+    /**
+     * Creates a matcher.
+     *
+     * @param baseDirectory Directory to scan
+     * @param includes      Include patterns, {@code **}/*.adoc if null
+     * @param excludes      Exclude patterns, may be null
+     * @param caseSensitive {@code true} to compare names exactly, which avoids
+     *                      case folding for every name
+     */
+    public FilePatternMatcher(File baseDirectory, String[] includes, String[] excludes, boolean caseSensitive) {
         this.baseDirectory = baseDirectory;
-        this.includes = includes != null ? includes : new String[] { "**/*.adoc" };
-        this.excludes = excludes != null ? excludes : new String[0];
+        this.includes = compile(includes != null ? includes : new String[] { "**/*.adoc" }, caseSensitive);
+        this.excludes = compile(excludes != null ? excludes : new String[0], caseSensitive);
+        this.patterns = String.join("\n", this.includes.stream().map(PathPattern::toString).toList()) + "\n!\n"
+                + String.join("\n", this.excludes.stream().map(PathPattern::toString).toList()) + "\n"
+                + caseSensitive;
     }
 
-    public List<File> getMatchedFiles() {
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setBasedir(baseDirectory);
-        scanner.setIncludes(includes);
-        scanner.setExcludes(excludes);
-        scanner.setCaseSensitive(false);
-        scanner.scan();
+    /**
+     * Walks the subdirectories of the base directory concurrently. Pays off for
+     * large trees on storage that serves several requests at once.
+     *
+     * @param parallel {@code true} to walk subdirectories in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
-        String[] includedFiles = scanner.getIncludedFiles();
-        List<File> files = new ArrayList<>();
+    /**
+     * Keeps the directory listings of each scan in the given file and reuses
+     * them for directories whose modification time did not change. The cached
+     * walk is sequential.
+     *
+     * @param cacheFile File holding the directory listings
+     * @param log       Maven logger instance
+     */
+    public void setScanCache(Path cacheFile, Log log) {
+        this.scanCacheFile = cacheFile;
+        this.log = log;
+    }
 
-        for (String relativePath : includedFiles) {
-            files.add(new File(baseDirectory, relativePath));
+    public List<File> getMatchedFiles() {
+        Path base = checkBaseDirectory();
+        List<String> matched = Collections.synchronizedList(new ArrayList<>());
+        if (scanCacheFile != null) {
+            walkCached(base, matched);
+        } else if (parallel) {
+            walkInParallel(base, matched);
+        } else {
+            walk(base, "", matched, false);
         }
 
+        List<String> sorted = new ArrayList<>(matched);
+        Collections.sort(sorted);
+        List<File> files = new ArrayList<>(sorted.size());
+        for (String relativePath : sorted) {
+            files.add(new File(baseDirectory, relativePath));
+        }
         return files;
     }
 
+    /**
+     * Checks whether any file matches. The walk stops at the first match.
+     */
     public boolean hasMatchedFiles() {
-        return !getMatchedFiles().isEmpty();
+        List<String> matched = new ArrayList<>();
+        walk(checkBaseDirectory(), "", matched, true);
+        return !matched.isEmpty();
+    }
+
+    private Path checkBaseDirectory() {
+        if (!baseDirectory.exists()) {
+            throw new IllegalStateException("basedir " + baseDirectory + " does not exist");
+        }
+        if (!baseDirectory.isDirectory()) {
+            throw new IllegalStateException("basedir " + baseDirectory + " is not a directory");
+        }
+        return baseDirectory.toPath();
+    }
+
+    private void walkInParallel(Path base, List<String> matched) {
+        List<Path> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(base)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (Files.isDirectory(entry)) {
+                    if (shouldEnter(name)) {
+                        subdirectories.add(entry);
+                    }
+                } else if (Files.isRegularFile(entry) && isSelected(name)) {
+                    matched.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list " + base, e);
+        }
+        subdirectories
+                .parallelStream()
+                .forEach(directory -> walk(directory, directory.getFileName().toString(), matched, false));
+    }
+
+    /**
+     * Walks a directory tree, following symbolic links like the Plexus scanner.
+     * Unreadable directories and link cycles are skipped.
+     *
+     * @param directory    Directory to walk
+     * @param relativePath Path of the directory relative to the base directory,
+     *                     empty for the base directory itself
+     * @param matched      Receives the relative paths of the matched files
+     * @param firstOnly    {@code true} to stop at the first match
+     */
+    private void walk(Path directory, String relativePath, List<String> matched, boolean firstOnly) {
+        Deque<String> paths = new ArrayDeque<>();
+        try {
+            Files
+                    .walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                            new SimpleFileVisitor<>() {
+                                @Override
+                                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                                    if (paths.isEmpty()) {
+                                        paths.push(relativePath);
+                                        return FileVisitResult.CONTINUE;
+                                    }
+                                    String path = child(paths.peek(), dir.getFileName().toString());
+                                    if (!shouldEnter(path)) {
+                                        return FileVisitResult.SKIP_SUBTREE;
+                                    }
+                                    paths.push(path);
+                                    return FileVisitResult.CONTINUE;
+                                }
+
+                                @Override
+                                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                                    if (!attributes.isRegularFile()) {
+                                        // Broken links and special files
+                                        return FileVisitResult.CONTINUE;
+                                    }
+                                    String path = child(paths.peek(), file.getFileName().toString());
+                                    if (isSelected(path)) {
+                                        matched.add(path);
+                                        if (firstOnly) {
+                                            return FileVisitResult.TERMINATE;
+                                        }
+                                    }
+                                    return FileVisitResult.CONTINUE;
+                                }
+
+                                @Override
+                                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                                    return FileVisitResult.CONTINUE;
+                                }
+
+                                @Override
+                                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                                    paths.pop();
+                                    return FileVisitResult.CONTINUE;
+                                }
+                            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan " + directory, e);
+        }
+    }
+
+    private void walkCached(Path base, List<String> matched) {
+        IncrementalStateStore store = new IncrementalStateStore(scanCacheFile, log);
+        IncrementalStateStore.Table directories = store.table("directories");
+        IncrementalStateStore.Table settings = store.table("settings");
+        if (!patterns.equals(settings.get(PATTERNS_KEY))) {
+            directories.clear();
+            settings.put(PATTERNS_KEY, patterns);
+        }
+
+        Set<String> visited = new HashSet<>();
+        walkCached(base, "", directories, visited, new HashSet<>(), matched);
+        directories.removeIf(directory -> !visited.contains(directory));
+        try {
+            store.save();
+        } catch (IOException e) {
+            log.debug("Failed to save " + scanCacheFile.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Walks a directory, listing it only if its recorded listing is missing or
+     * outdated.
+     *
+     * @param directory    Directory to walk
+     * @param relativePath Path of the directory relative to the base directory
+     * @param directories  Recorded listings by relative path
+     * @param visited      Receives the relative paths of all walked directories
+     * @param ancestors    File keys of the directories being walked, to stop at
+     *                     link cycles
+     * @param matched      Receives the relative paths of the matched files
+     */
+    private void walkCached(Path directory, String relativePath, IncrementalStateStore.Table directories,
+            Set<String> visited, Set<Object> ancestors, List<String> matched) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return;
+        }
+        Object fileKey = attributes.fileKey();
+        if (fileKey != null && !ancestors.add(fileKey)) {
+            return;
+        }
+
+        try {
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String recorded = directories.get(relativePath);
+            String listing;
+            if (recorded != null && recorded.startsWith(lastModified + "\n")) {
+                listing = recorded;
+            } else {
+                listing = list(directory, relativePath, lastModified);
+                if (listing == null) {
+                    return;
+                }
+                if (System.currentTimeMillis() - lastModified > RACY_INTERVAL_MILLIS) {
+                    directories.put(relativePath, listing);
+                } else {
+                    directories.remove(relativePath);
+                }
+            }
+            visited.add(relativePath);
+
+            String[] entries = listing.split("\n");
+            for (int i = 1; i < entries.length; i++) {
+                String path = child(relativePath, entries[i].substring(1));
+                if (entries[i].charAt(0) == FILE_ENTRY) {
+                    matched.add(path);
+                } else {
+                    walkCached(directory.resolve(entries[i].substring(1)), path, directories, visited, ancestors,
+                            matched);
+                }
+            }
+        } finally {
+            if (fileKey != null) {
+                ancestors.remove(fileKey);
+            }
+        }
+    }
+
+    /**
+     * Lists the matched files and the subdirectories to enter of a directory.
+     *
+     * @return The modification time followed by one line per entry, or null if
+     *         the directory cannot be read
+     */
+    private String list(Path directory, String relativePath, long lastModified) {
+        StringBuilder listing = new StringBuilder().append(lastModified);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                String path = child(relativePath, name);
+                if (name.indexOf('\n') >= 0) {
+                    // Cannot be recorded; such names are not matched
+                    continue;
+                }
+                if (Files.isDirectory(entry)) {
+                    if (shouldEnter(path)) {
+                        listing.append('\n').append(DIRECTORY_ENTRY).append(name);
+                    }
+                } else if (Files.isRegularFile(entry) && isSelected(path)) {
+                    listing.append('\n').append(FILE_ENTRY).append(name);
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return listing.toString();
+    }
+
+    private static String child(String parent, String name) {
+        return parent.isEmpty() ? name : parent + "/" + name;
+    }
+
+    private boolean isSelected(String relativePath) {
+        String[] names = relativePath.split("/");
+        return matchesAny(includes, relativePath, names) && !matchesAny(excludes, relativePath, names);
+    }
+
+    private boolean shouldEnter(String relativePath) {
+        String[] names = relativePath.split("/");
+        for (PathPattern exclude : excludes) {
+            if (exclude.excludesAllBelow(names)) {
+                return false;
+            }
+        }
+        for (PathPattern include : includes) {
+            if (include.couldMatchBelow(names)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(List<PathPattern> patterns, String relativePath, String[] names) {
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(relativePath, names)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathPattern> compile(String[] patterns, boolean caseSensitive) {
+        List<PathPattern> compiled = new ArrayList<>(patterns.length);
+        for (String pattern : patterns) {
+            if (pattern != null) {
+                compiled.add(new PathPattern(pattern.trim(), caseSensitive));
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * A compiled include or exclude pattern.
+     */
+    private static final class PathPattern {
+        private static final String ANY_DIRECTORIES = "**";
+
+        private final String pattern;
+        private final Pattern regex;
+        private final String[] segments;
+        private final boolean absolute;
+        private final boolean caseSensitive;
+
+        PathPattern(String pattern, boolean caseSensitive) {
+            this.pattern = pattern;
+            this.caseSensitive = caseSensitive;
+            if (pattern.startsWith(REGEX_PREFIX) && pattern.endsWith("]")) {
+                String expression = pattern.substring(REGEX_PREFIX.length(), pattern.length() - 1);
+                this.regex = Pattern.compile(expression, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+                this.segments = new String[0];
+                this.absolute = false;
+                return;
+            }
+            String ant = pattern.startsWith(ANT_PREFIX) && pattern.endsWith("]")
+                    ? pattern.substring(ANT_PREFIX.length(), pattern.length() - 1)
+                    : pattern;
+            ant = ant.replace('\\', '/');
+            if (ant.endsWith("/")) {
+                ant += ANY_DIRECTORIES;
+            }
+            this.regex = null;
+            // A leading separator never matches a relative path
+            this.absolute = ant.startsWith("/");
+            this.segments = ant.replaceAll("/+", "/").replaceAll("^/|/$", "").split("/");
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+
+        boolean matches(String relativePath, String[] names) {
+            if (regex != null) {
+                return regex.matcher(relativePath).matches();
+            }
+            return !absolute && match(0, names, 0);
+        }
+
+        /**
+         * Checks whether the pattern may match a path below the directory.
+         */
+        boolean couldMatchBelow(String[] directory) {
+            return regex != null || !absolute && matchStart(0, directory, 0);
+        }
+
+        /**
+         * Checks whether the pattern matches every path below the directory, i.e.
+         * it ends with {@code **} and the part before matches the directory.
+         */
+        boolean excludesAllBelow(String[] directory) {
+            int last = segments.length - 1;
+            if (regex != null || absolute || last < 0 || !ANY_DIRECTORIES.equals(segments[last])) {
+                return false;
+            }
+            return matchUpTo(last, 0, directory, 0);
+        }
+
+        private boolean match(int segment, String[] names, int name) {
+            return matchUpTo(segments.length, segment, names, name);
+        }
+
+        private boolean matchUpTo(int end, int segment, String[] names, int name) {
+            while (segment < end && !ANY_DIRECTORIES.equals(segments[segment])) {
+                if (name == names.length || !matchName(segments[segment], names[name])) {
+                    return false;
+                }
+                segment++;
+                name++;
+            }
+            if (segment == end) {
+                return name == names.length;
+            }
+            // Collapse consecutive ** and try every number of skipped names
+            while (segment < end && ANY_DIRECTORIES.equals(segments[segment])) {
+                segment++;
+            }
+            if (segment == end) {
+                return true;
+            }
+            for (int skipped = name; skipped < names.length; skipped++) {
+                if (matchUpTo(end, segment, names, skipped)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchStart(int segment, String[] names, int name) {
+            while (name < names.length) {
+                if (segment == segments.length) {
+                    return false;
+                }
+                if (ANY_DIRECTORIES.equals(segments[segment])) {
+                    return true;
+                }
+                if (!matchName(segments[segment], names[name])) {
+                    return false;
+                }
+                segment++;
+                name++;
+            }
+            // A file below the directory still needs at least one segment
+            return segment < segments.length;
+        }
+
+        /**
+         * Matches a single name against a segment with {@code *} and {@code ?}
+         * wildcards, backtracking to the last {@code *} on a mismatch.
+         */
+        private boolean matchName(String segment, String name) {
+            int s = 0;
+            int n = 0;
+            int star = -1;
+            int starName = 0;
+            while (n < name.length()) {
+                if (s < segment.length() && segment.charAt(s) == '*') {
+                    star = s++;
+                    starName = n;
+                } else if (s < segment.length()
+                        && (segment.charAt(s) == '?' || sameChar(segment.charAt(s), name.charAt(n)))) {
+                    s++;
+                    n++;
+                } else if (star >= 0) {
+                    s = star + 1;
+                    n = ++starName;
+                } else {
+                    return false;
+                }
+            }
+            while (s < segment.length() && segment.charAt(s) == '*') {
+                s++;
+            }
+            return s == segment.length();
+        }
+
+        private boolean sameChar(char expected, char actual) {
+            if (expected == actual) {
+                return true;
+            }
+            return !caseSensitive && (Character.toUpperCase(expected) == Character.toUpperCase(actual)
+                    || Character.toLowerCase(expected) == Character.toLowerCase(actual));
+        }
     }
-}
\ No newline at end of file
+}
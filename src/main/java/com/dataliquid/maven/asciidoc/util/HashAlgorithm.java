@@ -0,0 +1,102 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hash algorithms available for incremental change detection.
+ */
+public enum HashAlgorithm {
+
+    /**
+     * SHA-256, the default. Cryptographically strong, but far slower than change
+     * detection needs.
+     */
+    SHA_256("SHA-256") {
+        @Override
+        public Hasher newHasher() throws NoSuchAlgorithmException {
+            MessageDigest digest = MessageDigest.getInstance(getName());
+            return new Hasher() {
+                @Override
+                public void update(ByteBuffer data) {
+                    digest.update(data);
+                }
+
+                @Override
+                public byte[] digest() {
+                    return digest.digest();
+                }
+            };
+        }
+    },
+
+    /**
+     * 64-bit xxHash. Not collision resistant against deliberate attacks, but
+     * several times faster than SHA-256 and sufficient to detect edits.
+     */
+    XXH64("XXH64") {
+        @Override
+        public Hasher newHasher() {
+            return new XxHash64();
+        }
+    };
+
+    /**
+     * Incremental hash computation. Instances are not thread-safe.
+     */
+    public interface Hasher {
+
+        /**
+         * Adds the remaining bytes of the buffer to the hash and consumes them.
+         */
+        void update(ByteBuffer data);
+
+        /**
+         * Completes the hash and resets the hasher for the next input.
+         *
+         * @return The hash value
+         */
+        byte[] digest();
+    }
+
+    private final String name;
+
+    HashAlgorithm(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new hasher for this algorithm.
+     *
+     * @return A hasher ready for input
+     */
+    public abstract Hasher newHasher() throws NoSuchAlgorithmException;
+
+    /**
+     * Gets the configuration name of the algorithm.
+     *
+     * @return The name, e.g. {@code SHA-256}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Looks up an algorithm by its configuration name, ignoring case.
+     *
+     * @param  name The configured name
+     *
+     * @return      The algorithm
+     *
+     * @throws IllegalArgumentException if no algorithm has that name
+     */
+    public static HashAlgorithm fromName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + name);
+    }
+}
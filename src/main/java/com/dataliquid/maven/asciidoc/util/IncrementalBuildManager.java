@@ -2,94 +2,657 @@ package com.dataliquid.maven.asciidoc.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 
-public class IncrementalBuildManager {
+public class IncrementalBuildManager implements AutoCloseable {
 
-    private static final String HASH_FILE = ".asciidoc.hashes";
-    private static final String SHA_256_ALGORITHM = "SHA-256";
+    private static final String STATE_FILE = ".asciidoc.state";
+    private static final String JOURNAL_FILE = ".asciidoc.journal";
+    // Documents journaled before the state is saved and the journal restarted
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    // Plain text caches written by earlier versions
+    private static final String[] LEGACY_FILES = { ".asciidoc.hashes", ".asciidoc.dependencies",
+            ".asciidoc.configuration", ".asciidoc.stats" };
+    // Stored with the configuration; caches written before it was recorded
+    // used SHA-256
+    private static final String HASH_ALGORITHM_KEY = "hashAlgorithm";
+    private static final String MISSING_HASH = "-";
+    private static final String UNRESOLVED_HASH = "?";
+    // Files modified this recently may still change within the timestamp
+    // granularity of the file system (2 seconds on FAT), so their size and
+    // modification time are not trusted on the next build
+    private static final long RACY_INTERVAL_MILLIS = 2000;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    // Keys of files written to the output and work directories
+    private static final String OUTPUT_PREFIX = "output:";
+    private static final String WORK_PREFIX = "work:";
     private final File workDirectory;
-    private final Properties hashCache;
-    private final MessageDigest digest;
+    // Recorded paths are relative to this directory; null for absolute paths
+    private final Path baseDirectory;
+    // Roots of the recorded outputs, each moving independently of the sources;
+    // null if not known or if paths are recorded as absolute
+    private final Path outputRoot;
+    private final Path workRoot;
+    private final IncrementalStateStore store;
+    // Documents completed since the state was last saved
+    private final IncrementalJournal journal;
+    private boolean journalFailed;
+    private final IncrementalStateStore.Table hashCache;
+    // Per document: one "<hash> <path>" line per dependency
+    private final IncrementalStateStore.Table dependencyCache;
+    // Per document: one "<hash> <path>" line per file the conversion produced
+    private final IncrementalStateStore.Table outputCache;
+    // Outputs no longer produced by the document that wrote them in an earlier
+    // build; deleted at the end of the build unless another document produces
+    // them as well
+    private final Set<String> supersededOutputs = ConcurrentHashMap.newKeySet();
+    // Configuration the cached documents were rendered with
+    private final IncrementalStateStore.Table configurationCache;
+    // Per file: "<size> <last modified> <hash>" as seen by the last build
+    private final IncrementalStateStore.Table statCache;
+    // Files whose stats were checked in this build; stats of other files are
+    // dropped on save
+    private final Set<String> checkedStats = ConcurrentHashMap.newKeySet();
+    // Dependency hashes computed in this build; partials are shared by many documents
+    private final Map<Path, String> dependencyHashes = new ConcurrentHashMap<>();
+    private final DependencyScanner dependencyScanner;
+    // Source hashes computed by needsRegeneration, reused by updateHash after
+    // the document was rendered
+    private final Map<Path, String> checkedHashes = new ConcurrentHashMap<>();
+    private final HashAlgorithm hashAlgorithm;
+    // One hasher and one read buffer per thread checking files, reused for
+    // every file so hashing needs constant memory
+    private final ThreadLocal<HashAlgorithm.Hasher> hashers = ThreadLocal.withInitial(this::newHasher);
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
     private final Log log;
+    private boolean forceHash;
+    // Shares the content read for hashing a source with the later stages
+    private SourceCache sourceCache;
 
     public IncrementalBuildManager(File workDirectory) throws NoSuchAlgorithmException {
         this(workDirectory, new SystemStreamLog());
     }
 
     public IncrementalBuildManager(File workDirectory, Log log) throws NoSuchAlgorithmException {
+        this(workDirectory, log, new DependencyScanner());
+    }
+
+    public IncrementalBuildManager(File workDirectory, Log log, DependencyScanner dependencyScanner)
+            throws NoSuchAlgorithmException {
+        this(workDirectory, log, dependencyScanner, HashAlgorithm.SHA_256);
+    }
+
+    public IncrementalBuildManager(File workDirectory, Log log, DependencyScanner dependencyScanner,
+            HashAlgorithm hashAlgorithm) throws NoSuchAlgorithmException {
+        this(workDirectory, null, log, dependencyScanner, hashAlgorithm);
+    }
+
+    /**
+     * Creates a manager whose state is independent of the location of the
+     * project. Files are recorded relative to the source directory with
+     * {@code /} as separator, so a work directory restored from a CI cache into
+     * a different checkout or onto another operating system stays valid.
+     *
+     * @param workDirectory     Directory holding the incremental state
+     * @param sourceDirectory   Directory the recorded paths are relative to, or
+     *                          null to record absolute paths
+     * @param log               Maven logger instance
+     * @param dependencyScanner Finds the included files and images of a document
+     * @param hashAlgorithm     Content hash algorithm
+     */
+    public IncrementalBuildManager(File workDirectory, Path sourceDirectory, Log log,
+            DependencyScanner dependencyScanner, HashAlgorithm hashAlgorithm) throws NoSuchAlgorithmException {
+        this(workDirectory, sourceDirectory, null, log, dependencyScanner, hashAlgorithm);
+    }
+
+    /**
+     * Creates a manager whose state is independent of the location of the
+     * project. Sources and their dependencies are recorded relative to the
+     * source directory, rendered documents relative to the output directory and
+     * generated diagram images relative to the work directory, so each of them
+     * may be moved on its own.
+     *
+     * @param workDirectory     Directory holding the incremental state
+     * @param sourceDirectory   Directory the recorded paths are relative to, or
+     *                          null to record absolute paths
+     * @param outputDirectory   Directory the documents are rendered to, or null
+     *                          to record outputs relative to the source directory
+     * @param log               Maven logger instance
+     * @param dependencyScanner Finds the included files and images of a document
+     * @param hashAlgorithm     Content hash algorithm
+     */
+    public IncrementalBuildManager(File workDirectory, Path sourceDirectory, Path outputDirectory, Log log,
+            DependencyScanner dependencyScanner, HashAlgorithm hashAlgorithm) throws NoSuchAlgorithmException {
         this.workDirectory = workDirectory;
-        this.hashCache = new Properties();
-        this.digest = MessageDigest.getInstance(SHA_256_ALGORITHM);
+        this.baseDirectory = sourceDirectory != null ? sourceDirectory.toAbsolutePath().normalize() : null;
+        this.outputRoot = baseDirectory != null && outputDirectory != null
+                ? outputDirectory.toAbsolutePath().normalize()
+                : null;
+        this.workRoot = baseDirectory != null ? workDirectory.toPath().toAbsolutePath().normalize() : null;
+        this.store = new IncrementalStateStore(new File(workDirectory, STATE_FILE).toPath(), log);
+        this.hashCache = store.table("hashes");
+        this.dependencyCache = store.table("dependencies");
+        this.outputCache = store.table("outputs");
+        this.configurationCache = store.table("configuration");
+        this.statCache = store.table("stats");
+        this.journal = new IncrementalJournal(new File(workDirectory, JOURNAL_FILE).toPath(), log);
+        this.dependencyScanner = dependencyScanner;
+        this.hashAlgorithm = hashAlgorithm;
+        // Fail early if the algorithm is not available
+        hashAlgorithm.newHasher();
         this.log = log;
-        loadHashCache();
+        resumeFromJournal();
+        applyHashAlgorithm();
     }
 
-    private void loadHashCache() {
-        File hashFile = new File(workDirectory, HASH_FILE);
-        if (hashFile.exists()) {
-            try {
-                hashCache.load(Files.newInputStream(hashFile.toPath()));
-            } catch (IOException e) {
-                log.debug("Failed to load hash cache, starting with empty cache: " + e.getMessage());
+    /**
+     * Applies the journal of an interrupted build, so the documents it completed
+     * are not rendered again, and saves the result.
+     */
+    private void resumeFromJournal() {
+        IncrementalJournal.Replay replay = journal.read();
+        if (replay == null) {
+            return;
+        }
+
+        if (!replay.getConfiguration().equals(configurationEntries())) {
+            // The interrupted build had dropped the saved hashes
+            hashCache.clear();
+            dependencyCache.clear();
+            outputCache.clear();
+            statCache.clear();
+            configurationCache.clear();
+            replay.getConfiguration().forEach(configurationCache::put);
+        }
+        for (IncrementalJournal.Document document : replay.getDocuments()) {
+            hashCache.put(document.getKey(), document.getHash());
+            putOrRemove(dependencyCache, document.getKey(), document.getDependencies());
+            putOrRemove(outputCache, document.getKey(), document.getOutputs());
+        }
+        log.info("Resuming interrupted build, " + replay.getDocuments().size() + " files were already rendered");
+
+        try {
+            store.save();
+            journal.delete();
+        } catch (IOException e) {
+            log.warn("Failed to save recovered hash cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops all cached hashes if they were computed with a different algorithm.
+     */
+    private void applyHashAlgorithm() {
+        String recorded = configurationCache.get(HASH_ALGORITHM_KEY);
+        if (recorded == null) {
+            recorded = HashAlgorithm.SHA_256.getName();
+        }
+        if (!recorded.equals(hashAlgorithm.getName())) {
+            if (!hashCache.isEmpty()) {
+                log
+                        .info("Hash algorithm changed from " + recorded + " to " + hashAlgorithm.getName()
+                                + ", rendering all files");
             }
+            // Recorded output hashes would no longer match and the outputs be deleted
+            hashCache.clear();
+            dependencyCache.clear();
+            outputCache.clear();
+            statCache.clear();
         }
+        configurationCache.put(HASH_ALGORITHM_KEY, hashAlgorithm.getName());
+    }
+
+    /**
+     * Always read and hash files instead of trusting unchanged size and
+     * modification time. Needed on file systems with unreliable timestamps.
+     *
+     * @param forceHash {@code true} to hash every file on every build
+     */
+    public void setForceHash(boolean forceHash) {
+        this.forceHash = forceHash;
+    }
+
+    /**
+     * Reads sources through the given cache, so a source read for hashing is
+     * not read again for rendering, and the recorded hash is the hash of the
+     * rendered content.
+     *
+     * @param sourceCache Source content of this build, may be null
+     */
+    public void setSourceCache(SourceCache sourceCache) {
+        this.sourceCache = sourceCache;
     }
 
+    /**
+     * Compares the configuration of this build with the configuration the cached
+     * documents were rendered with. If any setting changed, all cached hashes are
+     * dropped so that every document is rendered again.
+     *
+     * @param  fingerprint Configuration of this build
+     *
+     * @return             {@code true} if the configuration changed
+     */
+    public boolean applyConfiguration(ConfigurationFingerprint fingerprint) {
+        Map<String, String> current = fingerprint.getEntries();
+        Set<String> changed = new TreeSet<>();
+        for (String name : configurationCache.keys()) {
+            if (!current.containsKey(name) && !HASH_ALGORITHM_KEY.equals(name)) {
+                changed.add(name);
+            }
+        }
+        current.forEach((name, hash) -> {
+            if (!hash.equals(configurationCache.get(name))) {
+                changed.add(name);
+            }
+        });
+        if (changed.isEmpty()) {
+            return false;
+        }
+
+        if (!hashCache.isEmpty()) {
+            log.info("Configuration changed (" + String.join(", ", changed) + "), rendering all files");
+        }
+        hashCache.clear();
+        dependencyCache.clear();
+        configurationCache.removeIf(name -> !current.containsKey(name) && !HASH_ALGORITHM_KEY.equals(name));
+        current.forEach(configurationCache::put);
+        return true;
+    }
+
+    /**
+     * Writes the incremental state. Nothing is written if no document was
+     * rendered and nothing changed since the last build.
+     */
     public void saveHashCache() {
-        File hashFile = new File(workDirectory, HASH_FILE);
+        statCache.removeIf(file -> !checkedStats.contains(file));
         try {
-            if (!workDirectory.exists()) {
-                workDirectory.mkdirs();
+            if (store.save()) {
+                for (String legacyFile : LEGACY_FILES) {
+                    Files.deleteIfExists(new File(workDirectory, legacyFile).toPath());
+                }
             }
-            hashCache.store(Files.newOutputStream(hashFile.toPath()), "AsciiDoc file hashes for incremental build");
+            journal.delete();
         } catch (IOException e) {
             log.warn("Failed to save hash cache: " + e.getMessage());
         }
     }
 
+    /**
+     * Closes the journal without saving. Documents journaled so far are
+     * recovered by the next build.
+     */
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    /**
+     * Checks whether a source must be rendered again. Safe to call from several
+     * threads at once, so that all sources can be checked in parallel before
+     * rendering starts.
+     *
+     * <p>
+     * If the outputs of the last conversion were recorded, every one of them
+     * must still exist with the recorded content; otherwise only the given
+     * output file is checked.
+     * </p>
+     *
+     * <p>
+     * Sources that need no rendering are dropped from the source cache, which
+     * may have read them for hashing.
+     * </p>
+     *
+     * @param sourceFile The source document
+     * @param outputFile The expected output, used if no outputs were recorded
+     */
     public boolean needsRegeneration(Path sourceFile, Path outputFile) {
-        if (!outputFile.toFile().exists()) {
+        boolean regenerate = checkRegeneration(sourceFile, outputFile);
+        if (!regenerate && sourceCache != null) {
+            sourceCache.release(sourceFile);
+        }
+        return regenerate;
+    }
+
+    private boolean checkRegeneration(Path sourceFile, Path outputFile) {
+        String recordedOutputs = outputCache.get(keyFor(sourceFile));
+        if (recordedOutputs != null) {
+            if (outputsChanged(sourceFile, recordedOutputs)) {
+                return true;
+            }
+        } else if (!outputFile.toFile().exists()) {
             return true;
         }
 
-        String currentHash = calculateFileHash(sourceFile);
-        String cachedHash = hashCache.getProperty(sourceFile.toString());
+        String currentHash = currentHash(sourceFile, true);
+        if (currentHash != null) {
+            checkedHashes.put(sourceFile, currentHash);
+        }
+        String cachedHash = hashCache.get(keyFor(sourceFile));
 
         if (currentHash == null || !currentHash.equals(cachedHash)) {
             return true;
         }
 
+        if (dependenciesChanged(sourceFile)) {
+            return true;
+        }
+
+        if (recordedOutputs != null) {
+            // The recorded outputs were verified by content
+            return false;
+        }
+
         // Check if output is older than source (shouldn't happen with hash, but safety
         // check)
         return sourceFile.toFile().lastModified() > outputFile.toFile().lastModified();
     }
 
     public void updateHash(Path sourceFile) {
-        String hash = calculateFileHash(sourceFile);
+        updateHash(sourceFile, List.of());
+    }
+
+    /**
+     * Records a rendered document together with the files its conversion
+     * produced, e.g. the HTML file and the generated diagram images.
+     *
+     * @param sourceFile  The rendered source document
+     * @param outputFiles The files written for the document
+     */
+    public void updateHash(Path sourceFile, List<Path> outputFiles) {
+        String hash = checkedHashes.remove(sourceFile);
+        if (hash == null) {
+            hash = currentHash(sourceFile, true);
+        }
         if (hash != null) {
-            hashCache.setProperty(sourceFile.toString(), hash);
+            hashCache.put(keyFor(sourceFile), hash);
+            updateDependencies(sourceFile);
+            updateOutputs(sourceFile, outputFiles);
+            appendToJournal(keyFor(sourceFile), hash);
         }
     }
 
-    private String calculateFileHash(Path file) {
+    /**
+     * Records a rendered document in the journal. Every
+     * {@value #CHECKPOINT_INTERVAL} documents the state is saved and the journal
+     * restarted, which keeps the journal and its replay short.
+     */
+    private void appendToJournal(String document, String hash) {
+        if (journalFailed) {
+            return;
+        }
         try {
-            byte[] fileContent = Files.readAllBytes(file);
-            byte[] hashBytes = digest.digest(fileContent);
-            return bytesToHex(hashBytes);
+            if (!journal.isStarted()) {
+                journal.start(configurationEntries());
+            }
+            String dependencies = dependencyCache.get(document);
+            String outputs = outputCache.get(document);
+            journal
+                    .append(document, hash, dependencies != null ? dependencies : "",
+                            outputs != null ? outputs : "");
+            if (journal.size() >= CHECKPOINT_INTERVAL) {
+                store.save();
+                journal.delete();
+            }
         } catch (IOException e) {
+            log
+                    .warn("Failed to write incremental build journal, progress is only saved at the end: "
+                            + e.getMessage());
+            journalFailed = true;
+            journal.close();
+        }
+    }
+
+    private Map<String, String> configurationEntries() {
+        Map<String, String> entries = new TreeMap<>();
+        for (String name : configurationCache.keys()) {
+            entries.put(name, configurationCache.get(name));
+        }
+        return entries;
+    }
+
+    /**
+     * Checks whether any file the document included or referenced when it was
+     * last rendered has changed. Includes are followed transitively, so editing
+     * a shared partial invalidates every document that uses it.
+     */
+    private boolean dependenciesChanged(Path sourceFile) {
+        String recorded = dependencyCache.get(keyFor(sourceFile));
+        if (recorded == null || recorded.isEmpty()) {
+            return false;
+        }
+
+        for (String line : recorded.split("\n")) {
+            int separator = line.indexOf(' ');
+            if (separator < 0) {
+                continue;
+            }
+            String recordedHash = line.substring(0, separator);
+            if (UNRESOLVED_HASH.equals(recordedHash)) {
+                log.debug("Regenerating " + sourceFile + ", it references " + line.substring(separator + 1));
+                return true;
+            }
+            Path dependency = pathFor(line.substring(separator + 1));
+            if (!recordedHash.equals(dependencyHash(dependency))) {
+                log.debug("Regenerating " + sourceFile + ", dependency changed: " + dependency);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateDependencies(Path sourceFile) {
+        try {
+            DependencyScanner.Dependencies dependencies = sourceCache != null
+                    ? dependencyScanner.scan(sourceFile, sourceCache.get(sourceFile).getBytes())
+                    : dependencyScanner.scan(sourceFile);
+            StringBuilder recorded = new StringBuilder();
+            for (Path dependency : dependencies.getFiles()) {
+                recorded.append(dependencyHash(dependency)).append(' ').append(keyFor(dependency)).append('\n');
+            }
+            for (String target : dependencies.getUnresolved()) {
+                recorded.append(UNRESOLVED_HASH).append(' ').append(target).append('\n');
+            }
+
+            if (recorded.length() == 0) {
+                dependencyCache.remove(keyFor(sourceFile));
+            } else {
+                dependencyCache.put(keyFor(sourceFile), recorded.toString());
+            }
+        } catch (IOException e) {
+            dependencyCache.remove(keyFor(sourceFile));
+        }
+    }
+
+    /**
+     * Checks whether any output of the last conversion is missing or was
+     * modified. Modified outputs are deleted: the conversion keeps diagram
+     * images it considers up to date, so a damaged image would otherwise
+     * survive the regeneration.
+     */
+    private boolean outputsChanged(Path sourceFile, String recorded) {
+        boolean changed = false;
+        for (String line : recorded.split("\n")) {
+            int separator = line.indexOf(' ');
+            if (separator < 0) {
+                continue;
+            }
+            Path output = pathFor(line.substring(separator + 1));
+            String hash = currentHash(output);
+            if (hash == null) {
+                log.debug("Regenerating " + sourceFile + ", output missing: " + output);
+                changed = true;
+            } else if (!hash.equals(line.substring(0, separator))) {
+                log.debug("Regenerating " + sourceFile + ", output modified: " + output);
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException e) {
+                    log.debug("Failed to delete modified output " + output + ": " + e.getMessage());
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void updateOutputs(Path sourceFile, List<Path> outputFiles) {
+        StringBuilder recorded = new StringBuilder();
+        Set<String> current = new HashSet<>();
+        for (Path output : outputFiles) {
+            String hash = currentHash(output);
+            if (hash != null) {
+                recorded.append(hash).append(' ').append(keyFor(output)).append('\n');
+                current.add(keyFor(output));
+            }
+        }
+
+        String key = keyFor(sourceFile);
+        for (String previous : outputKeys(outputCache.get(key))) {
+            if (!current.contains(previous)) {
+                supersededOutputs.add(previous);
+            }
+        }
+        putOrRemove(outputCache, key, recorded.toString());
+    }
+
+    private static Set<String> outputKeys(String recorded) {
+        Set<String> keys = new HashSet<>();
+        if (recorded != null) {
+            for (String line : recorded.split("\n")) {
+                int separator = line.indexOf(' ');
+                if (separator >= 0) {
+                    keys.add(line.substring(separator + 1));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static void putOrRemove(IncrementalStateStore.Table table, String key, String value) {
+        if (value.isEmpty()) {
+            table.remove(key);
+        } else {
+            table.put(key, value);
+        }
+    }
+
+    private String dependencyHash(Path dependency) {
+        String hash = dependencyHashes.get(dependency);
+        if (hash == null) {
+            // Hash outside the map so other threads are not blocked meanwhile
+            String computed = currentHash(dependency);
+            hash = computed != null ? computed : MISSING_HASH;
+            String previous = dependencyHashes.putIfAbsent(dependency, hash);
+            if (previous != null) {
+                hash = previous;
+            }
+        }
+        return hash;
+    }
+
+    private String currentHash(Path file) {
+        return currentHash(file, false);
+    }
+
+    /**
+     * Gets the content hash of a file. The file is only read if its size or
+     * modification time differ from the previous build, or if hashing is forced.
+     * Sources are read through the source cache, if it can hold them, instead
+     * of being streamed.
+     *
+     * @param  file   The file
+     * @param  source {@code true} if the file is a source document
+     *
+     * @return        The hash, or null if the file is missing or unreadable
+     */
+    private String currentHash(Path file, boolean source) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        String key = keyFor(file);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String stat = attributes.size() + " " + lastModified + " ";
+        String recorded = statCache.get(key);
+        if (!forceHash && recorded != null && recorded.startsWith(stat)) {
+            checkedStats.add(key);
+            return recorded.substring(stat.length());
+        }
+
+        String hash = source && sourceCache != null && sourceCache.fits(attributes.size())
+                ? calculateSourceHash(file)
+                : calculateFileHash(file);
+        if (hash != null && System.currentTimeMillis() - lastModified > RACY_INTERVAL_MILLIS) {
+            statCache.put(key, stat + hash);
+            checkedStats.add(key);
+        }
+        return hash;
+    }
+
+    private String calculateSourceHash(Path file) {
+        byte[] content;
+        try {
+            content = sourceCache.get(file).getBytes();
+        } catch (IOException e) {
+            return null;
+        }
+        HashAlgorithm.Hasher hasher = hashers.get();
+        hasher.update(ByteBuffer.wrap(content));
+        return bytesToHex(hasher.digest());
+    }
+
+    private String calculateFileHash(Path file) {
+        HashAlgorithm.Hasher hasher = hashers.get();
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+            return bytesToHex(hasher.digest());
+        } catch (IOException e) {
+            // Discard partial input
+            hasher.digest();
             return null;
         }
     }
 
+    private HashAlgorithm.Hasher newHasher() {
+        try {
+            return hashAlgorithm.newHasher();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(hashAlgorithm.getName() + " not available", e);
+        }
+    }
+
     private String bytesToHex(byte[] hashBytes) {
         StringBuilder result = new StringBuilder();
         for (byte byteValue : hashBytes) {
@@ -98,7 +661,107 @@ public class IncrementalBuildManager {
         return result.toString();
     }
 
+    /**
+     * Forgets sources that no longer exist and deletes the outputs recorded for
+     * them, together with outputs a rendered document no longer produces, e.g.
+     * the image of a diagram that was edited. Outputs that a current document
+     * produces as well are kept. Sources that still exist but were not part of
+     * this build, e.g. because the includes were narrowed, are kept as well.
+     *
+     * @param currentFiles The sources of this build
+     */
     public void removeStaleEntries(Map<String, Path> currentFiles) {
-        hashCache.entrySet().removeIf(entry -> !currentFiles.containsKey(entry.getKey().toString()));
+        Set<String> currentKeys = new HashSet<>();
+        for (Path file : currentFiles.values()) {
+            currentKeys.add(keyFor(file));
+        }
+        Map<String, Boolean> removedSources = new HashMap<>();
+        Predicate<String> removed = key -> removedSources
+                .computeIfAbsent(key, source -> !currentKeys.contains(source) && !Files.exists(pathFor(source)));
+
+        Set<String> orphans = new TreeSet<>(supersededOutputs);
+        Set<String> referenced = new HashSet<>();
+        for (String key : outputCache.keys()) {
+            Set<String> outputs = outputKeys(outputCache.get(key));
+            if (removed.test(key)) {
+                orphans.addAll(outputs);
+            } else {
+                outputs.forEach(output -> referenced.add(output.toLowerCase(Locale.ROOT)));
+            }
+        }
+        // Compared ignoring case: on a case-insensitive file system an output of
+        // a source renamed only in case is the same file as the new output
+        orphans.removeIf(output -> referenced.contains(output.toLowerCase(Locale.ROOT)));
+        deleteOutputs(orphans);
+        supersededOutputs.clear();
+
+        hashCache.removeIf(removed);
+        dependencyCache.removeIf(removed);
+        outputCache.removeIf(removed);
+    }
+
+    private void deleteOutputs(Set<String> outputs) {
+        int deleted = 0;
+        for (String output : outputs) {
+            Path file = pathFor(output);
+            try {
+                if (Files.deleteIfExists(file)) {
+                    log.debug("Deleted stale output: " + file);
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete stale output " + file + ": " + e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted " + deleted + " outputs of removed or changed sources");
+        }
+    }
+
+    /**
+     * Gets the key a file is recorded under: its path relative to the most
+     * specific of the source, output and work directory that contains it, with
+     * {@code /} as separator and a prefix naming the output and work directory.
+     * Files outside all of them are recorded relative to the source directory.
+     * The path is used as given if there is no source directory or the file is
+     * on a different file system root.
+     */
+    private String keyFor(Path file) {
+        if (baseDirectory == null) {
+            return file.toString();
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        Path root = baseDirectory;
+        String prefix = "";
+        if (isWithin(absolute, outputRoot, root)) {
+            root = outputRoot;
+            prefix = OUTPUT_PREFIX;
+        }
+        if (isWithin(absolute, workRoot, root)) {
+            root = workRoot;
+            prefix = WORK_PREFIX;
+        }
+        if (!Objects.equals(absolute.getRoot(), root.getRoot())) {
+            return absolute.toString();
+        }
+        return prefix + root.relativize(absolute).toString().replace(File.separatorChar, '/');
+    }
+
+    // Whether the file is in the directory and the directory is more specific
+    // than the root chosen so far
+    private static boolean isWithin(Path file, Path directory, Path root) {
+        return directory != null && file.startsWith(directory)
+                && (!file.startsWith(root) || directory.startsWith(root));
+    }
+
+    private Path pathFor(String key) {
+        if (outputRoot != null && key.startsWith(OUTPUT_PREFIX)) {
+            return outputRoot.resolve(key.substring(OUTPUT_PREFIX.length())).normalize();
+        }
+        if (workRoot != null && key.startsWith(WORK_PREFIX)) {
+            return workRoot.resolve(key.substring(WORK_PREFIX.length())).normalize();
+        }
+        Path path = Path.of(key);
+        return baseDirectory == null || path.isAbsolute() ? path : baseDirectory.resolve(path).normalize();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,268 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Append-only journal of the documents rendered since the incremental state
+ * was last saved. Every record is written to the file as soon as a document is
+ * completed and synced to disk periodically, so a build that is killed can be
+ * resumed from the journal. The journal starts with the configuration it was
+ * written for; a torn record at the end, left by a crash while appending, is
+ * ignored on replay.
+ */
+public class IncrementalJournal implements AutoCloseable {
+
+    private static final byte CONFIGURATION_RECORD = 'C';
+    private static final byte DOCUMENT_RECORD = 'D';
+    private static final long SYNC_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final Path file;
+    private final Log log;
+    private FileChannel channel;
+    private int records;
+    private long lastSync;
+
+    /**
+     * Creates a journal. The file is only created when the journal is started.
+     *
+     * @param file The journal file
+     * @param log  Maven logger instance
+     */
+    public IncrementalJournal(Path file, Log log) {
+        this.file = file;
+        this.log = log;
+    }
+
+    /**
+     * Starts a new journal, replacing any previous one.
+     *
+     * @param configuration The configuration the following documents are
+     *                      rendered with
+     */
+    public void start(Map<String, String> configuration) throws IOException {
+        close();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel
+                .open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        records = 0;
+        lastSync = System.nanoTime();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(CONFIGURATION_RECORD);
+        out.writeInt(configuration.size());
+        for (Map.Entry<String, String> entry : configuration.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        writeRecord(bytes.toByteArray());
+    }
+
+    /**
+     * Checks whether the journal has been started and not closed since.
+     */
+    public boolean isStarted() {
+        return channel != null;
+    }
+
+    /**
+     * Appends a completed document.
+     *
+     * @param document     Cache key of the document
+     * @param hash         Hash of the rendered source
+     * @param dependencies Recorded dependencies, empty if there are none
+     * @param outputs      Recorded outputs, empty if there are none
+     */
+    public void append(String document, String hash, String dependencies, String outputs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(DOCUMENT_RECORD);
+        writeString(out, document);
+        writeString(out, hash);
+        writeString(out, dependencies);
+        writeString(out, outputs);
+        writeRecord(bytes.toByteArray());
+        records++;
+
+        if (System.nanoTime() - lastSync > SYNC_INTERVAL_NANOS) {
+            channel.force(false);
+            lastSync = System.nanoTime();
+        }
+    }
+
+    /**
+     * Gets the number of documents appended since the journal was started.
+     */
+    public int size() {
+        return records;
+    }
+
+    /**
+     * Closes and deletes the journal, once its records are part of the saved
+     * state.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close " + file.getFileName() + ": " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Reads the journal left by an interrupted build.
+     *
+     * @return The journal content, or null if there is no readable journal
+     */
+    public Replay read() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            Map<String, String> configuration = null;
+            List<Document> documents = new ArrayList<>();
+            ByteBuffer payload;
+            while ((payload = nextRecord(buffer)) != null) {
+                byte type = payload.get();
+                if (type == CONFIGURATION_RECORD && configuration == null) {
+                    configuration = new LinkedHashMap<>();
+                    int count = payload.getInt();
+                    for (int i = 0; i < count; i++) {
+                        configuration.put(readString(payload), readString(payload));
+                    }
+                } else if (type == DOCUMENT_RECORD && configuration != null) {
+                    String key = readString(payload);
+                    String hash = readString(payload);
+                    String dependencies = readString(payload);
+                    String outputs = readString(payload);
+                    documents.add(new Document(key, hash, dependencies, outputs));
+                } else {
+                    break;
+                }
+            }
+            return configuration != null ? new Replay(configuration, documents) : null;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to read " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + payload.length + Long.BYTES);
+        record.putInt(payload.length).put(payload).putLong(crc.getValue()).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < Integer.BYTES) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length <= 0 || buffer.remaining() < length + Long.BYTES) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue() == buffer.getLong() ? ByteBuffer.wrap(payload) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Content of a journal: the configuration and the completed documents in
+     * the order they were appended.
+     */
+    public static final class Replay {
+        private final Map<String, String> configuration;
+        private final List<Document> documents;
+
+        private Replay(Map<String, String> configuration, List<Document> documents) {
+            this.configuration = Collections.unmodifiableMap(configuration);
+            this.documents = Collections.unmodifiableList(documents);
+        }
+
+        public Map<String, String> getConfiguration() {
+            return configuration;
+        }
+
+        public List<Document> getDocuments() {
+            return documents;
+        }
+    }
+
+    /**
+     * A completed document recorded in the journal.
+     */
+    public static final class Document {
+        private final String key;
+        private final String hash;
+        private final String dependencies;
+        private final String outputs;
+
+        private Document(String key, String hash, String dependencies, String outputs) {
+            this.key = key;
+            this.hash = hash;
+            this.dependencies = dependencies;
+            this.outputs = outputs;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getDependencies() {
+            return dependencies;
+        }
+
+        public String getOutputs() {
+            return outputs;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Binary file holding the incremental build state as named tables of string
+ * entries. Entries are stored sorted by key behind an offset index and looked
+ * up by binary search in the loaded file content, so loading a large state
+ * needs a single read and no per-entry objects. Changes are kept in memory and
+ * the file is only rewritten, atomically, if a table actually changed.
+ *
+ * <p>
+ * Layout: magic, version and table count, then for each table its name, the
+ * number of entries, one absolute offset per entry and the entries themselves.
+ * Strings are stored as a length followed by their UTF-8 bytes.
+ * </p>
+ */
+public class IncrementalStateStore {
+
+    private static final int MAGIC = 0x41444F43;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Log log;
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+
+    /**
+     * Opens a store. A missing, unreadable or corrupt file yields an empty
+     * store.
+     *
+     * @param file The state file
+     * @param log  Maven logger instance
+     */
+    public IncrementalStateStore(Path file, Log log) {
+        this.file = file;
+        this.log = log;
+        load();
+    }
+
+    /**
+     * Gets a table, creating an empty one if the file does not contain it.
+     *
+     * @param  name Name of the table
+     *
+     * @return      The table
+     */
+    public synchronized Table table(String name) {
+        return tables.computeIfAbsent(name, key -> new Table(null, 0, 0));
+    }
+
+    /**
+     * Writes the store if any table changed since it was loaded or last saved,
+     * or if the file does not exist yet. The file is replaced atomically, so a
+     * build killed while saving leaves the previous state intact.
+     *
+     * @return {@code true} if the file was written
+     */
+    public synchronized boolean save() throws IOException {
+        boolean modified = tables.values().stream().anyMatch(Table::isModified);
+        if (!modified && Files.exists(file)) {
+            return false;
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        for (Table table : tables.values()) {
+            table.modified = false;
+        }
+        return true;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        // Read rather than mapped: a mapped file cannot be replaced on Windows
+        // until the mapping is garbage collected
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("State file too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file
+            }
+            buffer.flip();
+            parse(buffer);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to load " + file.getFileName() + ", starting with empty cache: " + e.getMessage());
+            tables.clear();
+        }
+    }
+
+    private void parse(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not an incremental state file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported state file version " + version);
+        }
+
+        int tableCount = buffer.getInt();
+        for (int t = 0; t < tableCount; t++) {
+            String name = readString(buffer, buffer.position());
+            buffer.position(buffer.position() + Integer.BYTES + buffer.getInt(buffer.position()));
+            int count = buffer.getInt();
+            int index = buffer.position();
+            buffer.position(index + count * Integer.BYTES);
+
+            // Validate the entries once so lookups cannot run out of bounds
+            for (int i = 0; i < count; i++) {
+                int offset = buffer.getInt(index + i * Integer.BYTES);
+                if (offset != buffer.position()) {
+                    throw new IOException("Corrupt index in table " + name);
+                }
+                skipString(buffer);
+                skipString(buffer);
+            }
+            tables.put(name, new Table(buffer, index, count));
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tables.size());
+        for (Map.Entry<String, Table> table : tables.entrySet()) {
+            writeBytes(out, table.getKey().getBytes(StandardCharsets.UTF_8));
+
+            List<byte[]> encoded = new ArrayList<>();
+            for (Map.Entry<String, String> entry : table.getValue().entries().entrySet()) {
+                encoded.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                encoded.add(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+            int count = encoded.size() / 2;
+            out.writeInt(count);
+
+            int offset = out.size() + count * Integer.BYTES;
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offset);
+                offset += 2 * Integer.BYTES + encoded.get(2 * i).length + encoded.get(2 * i + 1).length;
+            }
+            for (byte[] bytes : encoded) {
+                writeBytes(out, bytes);
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void skipString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt entry at offset " + buffer.position());
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Table of string entries. Reads are served from the loaded file content,
+     * changes from an in-memory overlay. Safe for concurrent use.
+     */
+    public static final class Table {
+
+        // Marks an entry of the file that was removed in memory
+        private static final String REMOVED = new String();
+
+        private final ByteBuffer base;
+        private final int index;
+        private final int baseCount;
+        private final Map<String, String> changes = new ConcurrentHashMap<>();
+        // Number of entries, kept up to date by every change
+        private final AtomicInteger size;
+        private volatile boolean cleared;
+        private volatile boolean modified;
+
+        private Table(ByteBuffer base, int index, int baseCount) {
+            this.base = base;
+            this.index = index;
+            this.baseCount = baseCount;
+            this.size = new AtomicInteger(baseCount);
+        }
+
+        /**
+         * Gets the value of an entry.
+         *
+         * @param  key The key
+         *
+         * @return     The value, or null if there is no entry
+         */
+        public String get(String key) {
+            return current(key, changes.get(key));
+        }
+
+        /**
+         * Sets the value of an entry.
+         */
+        public void put(String key, String value) {
+            changes.compute(key, (k, change) -> {
+                String current = current(k, change);
+                if (value.equals(current)) {
+                    return change;
+                }
+                if (current == null) {
+                    size.incrementAndGet();
+                }
+                modified = true;
+                return value;
+            });
+        }
+
+        /**
+         * Removes an entry.
+         */
+        public void remove(String key) {
+            changes.compute(key, (k, change) -> {
+                if (current(k, change) == null) {
+                    return change;
+                }
+                size.decrementAndGet();
+                modified = true;
+                return REMOVED;
+            });
+        }
+
+        /**
+         * Removes all entries whose key matches the predicate.
+         */
+        public void removeIf(Predicate<String> predicate) {
+            for (String key : keys()) {
+                if (predicate.test(key)) {
+                    remove(key);
+                }
+            }
+        }
+
+        /**
+         * Removes all entries.
+         */
+        public synchronized void clear() {
+            if (!isEmpty()) {
+                changes.clear();
+                cleared = true;
+                size.set(0);
+                modified = true;
+            }
+        }
+
+        /**
+         * Gets a view of the keys of all entries in sorted order. Keys of the
+         * loaded file are decoded while iterating, their values not at all.
+         *
+         * @return The keys
+         */
+        public Set<String> keys() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new KeyIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size.get();
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return key instanceof String && get((String) key) != null;
+                }
+            };
+        }
+
+        public boolean isEmpty() {
+            return size.get() == 0;
+        }
+
+        boolean isModified() {
+            return modified;
+        }
+
+        private SortedMap<String, String> entries() {
+            SortedMap<String, String> entries = new TreeMap<>();
+            if (!cleared) {
+                for (int i = 0; i < baseCount; i++) {
+                    int offset = offset(i);
+                    String key = readString(base, offset);
+                    entries.put(key, readString(base, offset + Integer.BYTES + base.getInt(offset)));
+                }
+            }
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                if (change.getValue() == REMOVED) {
+                    entries.remove(change.getKey());
+                } else {
+                    entries.put(change.getKey(), change.getValue());
+                }
+            }
+            return entries;
+        }
+
+        private String current(String key, String change) {
+            if (change != null) {
+                return change == REMOVED ? null : change;
+            }
+            return cleared ? null : findInBase(key);
+        }
+
+        private String findInBase(String key) {
+            int low = 0;
+            int high = baseCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int offset = offset(middle);
+                int comparison = readString(base, offset).compareTo(key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return readString(base, offset + Integer.BYTES + base.getInt(offset));
+                }
+            }
+            return null;
+        }
+
+        private int offset(int entry) {
+            return base.getInt(index + entry * Integer.BYTES);
+        }
+
+        /**
+         * Merges the keys of the loaded file with the keys changed in memory,
+         * both in sorted order. Changes made while iterating may not be seen.
+         */
+        private final class KeyIterator implements Iterator<String> {
+            private final Map<String, String> changed = new HashMap<>(changes);
+            private final Iterator<String> added = changed
+                    .entrySet()
+                    .stream()
+                    .filter(change -> change.getValue() != REMOVED)
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .iterator();
+            private final int baseEnd = cleared ? 0 : baseCount;
+            private int nextBase;
+            private String baseKey = nextBaseKey();
+            private String addedKey = added.hasNext() ? added.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return baseKey != null || addedKey != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String key;
+                if (addedKey == null || (baseKey != null && baseKey.compareTo(addedKey) < 0)) {
+                    key = baseKey;
+                    baseKey = nextBaseKey();
+                } else {
+                    key = addedKey;
+                    addedKey = added.hasNext() ? added.next() : null;
+                }
+                return key;
+            }
+
+            // Keys changed in memory come from the added keys or are removed
+            private String nextBaseKey() {
+                while (nextBase < baseEnd) {
+                    String key = readString(base, offset(nextBase++));
+                    if (!changed.containsKey(key)) {
+                        return key;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content of the source documents of one build. A source is read once and
+ * shared by every stage that needs it: change detection, diagram detection,
+ * conversion and dependency scanning, so the hash recorded for a document is
+ * always the hash of the content that was rendered. Content is kept until the
+ * document is released; sources that do not fit into the memory budget are
+ * read again by each stage instead. The budget covers both the raw content and
+ * the decoded text; text that does not fit is decoded again on each call.
+ */
+public class SourceCache {
+
+    private static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    private final Map<Path, Source> sources = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final long budgetBytes;
+
+    public SourceCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param budgetBytes Maximum total size of the raw and decoded sources kept
+     *                    in memory
+     */
+    public SourceCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Gets the content of a source, reading it if it is not cached. Safe to call
+     * from several threads at once.
+     *
+     * @param  file The source file
+     *
+     * @return      The content
+     */
+    public Source get(Path file) throws IOException {
+        Source source = sources.get(file);
+        if (source != null) {
+            return source;
+        }
+
+        source = new Source(Files.readAllBytes(file));
+        if (!reserve(source.bytes.length)) {
+            return source;
+        }
+        source.retained = true;
+        Source previous = sources.putIfAbsent(file, source);
+        if (previous != null) {
+            // Read concurrently by another stage
+            retainedBytes.addAndGet(-source.bytes.length);
+            return previous;
+        }
+        return source;
+    }
+
+    /**
+     * Checks whether a source of the given size would be kept in memory.
+     *
+     * @param size Size of the source in bytes
+     */
+    public boolean fits(long size) {
+        return retainedBytes.get() + size <= budgetBytes;
+    }
+
+    /**
+     * Drops the content of a source once all stages are done with it.
+     *
+     * @param file The source file
+     */
+    public void release(Path file) {
+        Source source = sources.remove(file);
+        if (source != null) {
+            synchronized (source) {
+                source.retained = false;
+                retainedBytes.addAndGet(-source.bytes.length - source.textBytes);
+            }
+        }
+    }
+
+    /**
+     * Gets the total size of the raw and decoded sources currently kept in
+     * memory.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private boolean reserve(long size) {
+        long current;
+        do {
+            current = retainedBytes.get();
+            if (current + size > budgetBytes) {
+                return false;
+            }
+        } while (!retainedBytes.compareAndSet(current, current + size));
+        return true;
+    }
+
+    /**
+     * Content of a single source.
+     */
+    public final class Source {
+        private final byte[] bytes;
+        private volatile String text;
+        // Guarded by this source
+        private boolean retained;
+        private long textBytes;
+
+        private Source(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Gets the raw content. The returned array is shared and must not be
+         * modified.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets the content decoded as UTF-8. Like {@link Files#readString(Path)},
+         * malformed input is reported instead of replaced.
+         */
+        public String getText() throws CharacterCodingException {
+            String decoded = text;
+            if (decoded != null) {
+                return decoded;
+            }
+            synchronized (this) {
+                if (text != null) {
+                    return text;
+                }
+                decoded = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+                if (!retained) {
+                    // Not shared, dropped together with this source
+                    text = decoded;
+                } else if (reserve(2L * decoded.length())) {
+                    // Two bytes per char, the upper bound of a String's size
+                    textBytes = 2L * decoded.length();
+                    text = decoded;
+                }
+                return decoded;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the 64-bit xxHash algorithm (XXH64) with seed 0.
+ * Input is consumed in 32 byte stripes; up to one partial stripe is buffered
+ * between updates.
+ */
+final class XxHash64 implements HashAlgorithm.Hasher {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_LENGTH = 32;
+
+    private final byte[] pending = new byte[STRIPE_LENGTH];
+    private final ByteBuffer pendingBuffer = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+    private int pendingLength;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    XxHash64() {
+        reset();
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        ByteBuffer input = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        data.position(data.limit());
+        totalLength += input.remaining();
+
+        if (pendingLength > 0) {
+            int length = Math.min(STRIPE_LENGTH - pendingLength, input.remaining());
+            input.get(pending, pendingLength, length);
+            pendingLength += length;
+            if (pendingLength < STRIPE_LENGTH) {
+                return;
+            }
+            processStripe(pendingBuffer, 0);
+            pendingLength = 0;
+        }
+
+        while (input.remaining() >= STRIPE_LENGTH) {
+            processStripe(input, input.position());
+            input.position(input.position() + STRIPE_LENGTH);
+        }
+
+        pendingLength = input.remaining();
+        input.get(pending, 0, pendingLength);
+    }
+
+    @Override
+    public byte[] digest() {
+        long hash;
+        if (totalLength >= STRIPE_LENGTH) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += totalLength;
+
+        int offset = 0;
+        while (offset + 8 <= pendingLength) {
+            hash ^= round(0, pendingBuffer.getLong(offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+        if (offset + 4 <= pendingLength) {
+            hash ^= (pendingBuffer.getInt(offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        while (offset < pendingLength) {
+            hash ^= (pending[offset] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+
+        reset();
+        return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+    }
+
+    private void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    private void processStripe(ByteBuffer buffer, int offset) {
+        v1 = round(v1, buffer.getLong(offset));
+        v2 = round(v2, buffer.getLong(offset + 8));
+        v3 = round(v3, buffer.getLong(offset + 16));
+        v4 = round(v4, buffer.getLong(offset + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME1 + PRIME4;
+    }
+}
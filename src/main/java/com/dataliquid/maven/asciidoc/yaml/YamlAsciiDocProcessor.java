@@ -130,8 +130,14 @@ public class YamlAsciiDocProcessor {
      * Process a YAML file and render any !asciidoc content
      */
     public String processYamlFile(Path yamlFile) throws IOException {
-        String content = Files.readString(yamlFile);
+        return processYamlContent(Files.readString(yamlFile));
+    }
 
+    /**
+     * Process YAML content that was already read and render any !asciidoc
+     * content
+     */
+    public String processYamlContent(String content) {
         // Parse YAML with custom constructor
         AsciiDocTag constructor = new AsciiDocTag();
         Yaml yaml = new Yaml(constructor);
@@ -11,20 +11,27 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.Options;
+import org.asciidoctor.ast.Document;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -129,6 +136,42 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
         assertEquals(expectedHtml, actualHtml, "Generated HTML should match expected HTML");
     }
 
+    @Test
+    void shouldResolveIncludesAndDiagramsInSafeMode() throws Exception {
+        // Given - the project directory is the SAFE mode jail
+        MavenProject project = createMavenProject();
+        project.setFile(tempDir.resolve("pom.xml").toFile());
+        setField(mojo, "project", project);
+        setField(mojo, "safeMode", "SAFE");
+        setField(mojo, "includes", new String[] { "guide/*.adoc" });
+        setField(mojo, "enableDiagrams", true);
+        setField(mojo, "diagramFormat", "png");
+
+        Path guideDir = Files.createDirectories(sourceDir.toPath().resolve("guide"));
+        Path partialsDir = Files.createDirectories(sourceDir.toPath().resolve("partials"));
+        Files
+                .writeString(guideDir.resolve("page.adoc"),
+                        loadTestResource("/functional/render/safe-mode-test/page.adoc"));
+        Files
+                .writeString(partialsDir.resolve("chapter.adoc"),
+                        loadTestResource("/functional/render/safe-mode-test/chapter.adoc"));
+        Files
+                .writeString(sourceDir.toPath().resolve("shared.adoc"),
+                        loadTestResource("/functional/render/safe-mode-test/shared.adoc"));
+
+        String expectedHtml = loadTestResource("/functional/render/safe-mode-test/expected.html");
+
+        // When
+        mojo.execute();
+
+        // Then
+        File generatedHtml = new File(outputDir, "guide/page.html");
+        assertTrue(generatedHtml.exists(), "HTML file should be generated");
+        assertTrue(new File(workDir, "images/safe-mode-diagram.png").exists(),
+                "Diagram should be generated into the work directory");
+        assertEquals(expectedHtml, loadFile(generatedHtml), "Includes should resolve within the project directory");
+    }
+
     @Test
     void shouldProcessWithCustomTemplateDir() throws Exception {
         // Given
@@ -166,7 +209,9 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
 
         // Mock Asciidoctor to return empty content
         Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
-        when(mockAsciidoctor.convert(anyString(), any(Options.class))).thenReturn("");
+        Document emptyDocument = mock(Document.class);
+        when(emptyDocument.convert()).thenReturn("");
+        when(mockAsciidoctor.load(anyString(), any(Options.class))).thenReturn(emptyDocument);
 
         // Inject the mock
         setField(mojo, "asciidoctor", mockAsciidoctor);
@@ -178,6 +223,26 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
         assertFalse(new File(outputDir, "empty.html").exists(), "HTML file should not be created for empty conversion");
     }
 
+    @Test
+    void shouldNotShutDownProvidedAsciidoctor() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/simple-render-test").toURI());
+        setField(mojo, "sourceDirectory", testSourceDir);
+
+        Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
+        Document document = mock(Document.class);
+        when(document.convert()).thenReturn("<p>content</p>");
+        when(mockAsciidoctor.load(anyString(), any(Options.class))).thenReturn(document);
+        setField(mojo, "asciidoctor", mockAsciidoctor);
+
+        // When
+        mojo.execute();
+
+        // Then
+        verify(mockAsciidoctor).load(anyString(), any(Options.class));
+        verify(mockAsciidoctor, never()).shutdown();
+    }
+
     @Test
     void shouldHandleGeneralExecutionException() throws Exception {
         // Given
@@ -195,6 +260,55 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
                 "Should throw MojoExecutionException when file processing fails");
     }
 
+    @Test
+    void shouldFailWhenDiagramLibraryCannotBeLoaded() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/diagram-failure-test").toURI());
+
+        // Start a mock Asciidoctor that throws exception during requireLibrary for
+        // the diagram runtime
+        Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
+        doThrow(new RuntimeException("Failed to load library")).when(mockAsciidoctor).requireLibrary(anyString());
+        mojo = new RenderMojo() {
+            @Override
+            protected Asciidoctor createAsciidoctor() {
+                return mockAsciidoctor;
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+        configureDefaultMojo(mojo);
+        setField(mojo, "sourceDirectory", testSourceDir);
+        setField(mojo, "enableDiagrams", true);
+
+        // When & Then
+        assertThrows(MojoExecutionException.class, () -> mojo.execute(),
+                "Should throw MojoExecutionException when asciidoctor-diagram cannot be loaded");
+    }
+
+    @Test
+    void shouldNotLoadDiagramLibraryForDocumentsWithoutDiagrams() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/simple-render-test").toURI());
+        Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
+        mojo = new RenderMojo() {
+            @Override
+            protected Asciidoctor createAsciidoctor() {
+                return mockAsciidoctor;
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+        configureDefaultMojo(mojo);
+        setField(mojo, "sourceDirectory", testSourceDir);
+        setField(mojo, "enableDiagrams", true);
+
+        // When
+        mojo.execute();
+
+        // Then
+        verify(mockAsciidoctor).load(anyString(), any(Options.class));
+        verify(mockAsciidoctor, never()).requireLibrary(anyString());
+    }
+
     @Test
     void shouldProcessWithCustomAttributes() throws Exception {
         // Given
@@ -281,6 +395,26 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
         assertEquals(expectedModifiedHtml, actualHtml, "Generated HTML should match expected modified HTML");
     }
 
+    @Test
+    void shouldKeepOutputsOfSourcesExcludedFromIncrementalBuild() throws Exception {
+        // Given
+        setField(mojo, "enableIncremental", true);
+        String content = loadTestResource("/functional/render/incremental-unchanged-test/incremental.adoc");
+        Files.writeString(sourceDir.toPath().resolve("intro.adoc"), content);
+        Files.writeString(sourceDir.toPath().resolve("guide.adoc"), content);
+        mojo.execute();
+        File guideHtml = new File(outputDir, "guide.html");
+        assertTrue(guideHtml.exists(), "HTML file should be generated on first run");
+
+        // When - a narrowed run, e.g. -Dasciidoc.includes=intro.adoc
+        setField(mojo, "includes", new String[] { "intro.adoc" });
+        mojo.execute();
+
+        // Then
+        assertTrue(new File(outputDir, "intro.html").exists(), "Included source should still be rendered");
+        assertTrue(guideHtml.exists(), "Output of an existing source outside the includes should be kept");
+    }
+
     @Test
     @Disabled("Platform-specific test that doesn't work reliably - warning message not consistent")
     void shouldFallbackToFullBuildWhenIncrementalFails() throws Exception {
@@ -322,7 +456,7 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
 
         // Mock Asciidoctor to throw exception
         Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
-        when(mockAsciidoctor.convert(anyString(), any(Options.class)))
+        when(mockAsciidoctor.load(anyString(), any(Options.class)))
                 .thenThrow(new RuntimeException("Processing error"));
         setField(mojo, "asciidoctor", mockAsciidoctor);
 
@@ -381,8 +515,10 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
         Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
         String expectedSuccessHtml = loadTestResource(
                 "/functional/render/multiple-files-mixed-test/expected-success.html");
-        when(mockAsciidoctor.convert(contains("This will work"), any(Options.class))).thenReturn(expectedSuccessHtml);
-        when(mockAsciidoctor.convert(contains("This will fail"), any(Options.class)))
+        Document successDocument = mock(Document.class);
+        when(successDocument.convert()).thenReturn(expectedSuccessHtml);
+        when(mockAsciidoctor.load(contains("This will work"), any(Options.class))).thenReturn(successDocument);
+        when(mockAsciidoctor.load(contains("This will fail"), any(Options.class)))
                 .thenThrow(new RuntimeException("Conversion failed"));
         setField(mojo, "asciidoctor", mockAsciidoctor);
 
@@ -769,4 +905,157 @@ class RenderMojoTest extends AbstractMojoTest<RenderMojo> {
         String actualOutput = loadFile(generatedFile);
         assertEquals(expectedOutput, actualOutput, "Generated output should match expected YAML");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRenderFilesInParallelWithWorkerPool() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/parallel-render-test").toURI());
+        setField(mojo, "sourceDirectory", testSourceDir);
+        setField(mojo, "renderThreads", 2);
+
+        LogCapture logCapture = new LogCapture();
+        setField(mojo, "log", logCapture);
+
+        // When
+        mojo.execute();
+
+        // Then
+        for (int i = 1; i <= 4; i++) {
+            File generatedHtml = new File(outputDir, "doc" + i + ".html");
+            assertTrue(generatedHtml.exists(), "HTML file should be generated: " + generatedHtml.getName());
+
+            String expectedHtml = loadTestResource(
+                    "/functional/render/parallel-render-test/expected-doc" + i + ".html");
+            assertEquals(expectedHtml, loadFile(generatedHtml), "Generated HTML should match expected HTML");
+        }
+
+        String logOutput = logCapture.getCapturedOutput();
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(logOutput.contains("Generated: " + new File(outputDir, "doc" + i + ".html").toPath()),
+                    "Every generated file should be reported");
+        }
+        assertTrue(logOutput.contains("Rendered 4 documents with 2 workers"), "Should report worker throughput");
+    }
+
+    @Test
+    void shouldRenderFilesInStagedPipeline() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/pipeline-render-test").toURI());
+        setField(mojo, "sourceDirectory", testSourceDir);
+        setField(mojo, "renderPipeline", true);
+        setField(mojo, "renderThreads", 2);
+
+        LogCapture logCapture = new LogCapture();
+        setField(mojo, "log", logCapture);
+
+        // When
+        mojo.execute();
+
+        // Then
+        for (int i = 1; i <= 4; i++) {
+            File generatedHtml = new File(outputDir, "doc" + i + ".html");
+            assertTrue(generatedHtml.exists(), "HTML file should be generated: " + generatedHtml.getName());
+
+            String expectedHtml = loadTestResource(
+                    "/functional/render/pipeline-render-test/expected-doc" + i + ".html");
+            assertEquals(expectedHtml, loadFile(generatedHtml), "Generated HTML should match expected HTML");
+        }
+
+        String logOutput = logCapture.getCapturedOutput();
+        int previous = -1;
+        for (int i = 1; i <= 4; i++) {
+            int processing = logOutput.indexOf("Processing: " + new File(testSourceDir, "doc" + i + ".adoc").toPath());
+            assertTrue(processing > previous, "Documents should be logged in file order");
+            previous = processing;
+        }
+        assertTrue(logOutput.contains("Rendered 4 documents in a 4 stage pipeline"),
+                "Should report pipeline throughput");
+        for (String stage : new String[] { "read", "convert", "template", "write" }) {
+            assertTrue(logOutput.contains("  " + stage + ": "), "Should report statistics of stage " + stage);
+        }
+    }
+
+    @Test
+    void shouldPregenerateDiagramsInParallel() throws Exception {
+        // Given
+        for (int i = 1; i <= 3; i++) {
+            Files.writeString(sourceDir.toPath().resolve("diagram" + i + ".adoc"), "= Diagram " + i
+                    + "\n\n[plantuml]\n----\nAlice -> Bob: Message " + i + "\n----\n");
+        }
+        setField(mojo, "enableDiagrams", true);
+        setField(mojo, "diagramFormat", "svg");
+        setField(mojo, "diagramThreads", 2);
+
+        LogCapture logCapture = new LogCapture();
+        setField(mojo, "log", logCapture);
+
+        // When
+        mojo.execute();
+
+        // Then
+        File imagesDir = new File(workDir, "images");
+        File[] svgFiles = imagesDir.listFiles((dir, name) -> name.endsWith(".svg"));
+        assertNotNull(svgFiles, "Images directory should contain the diagrams");
+        assertEquals(3, svgFiles.length, "Every diagram should be generated exactly once");
+
+        for (int i = 1; i <= 3; i++) {
+            String html = loadFile(new File(outputDir, "diagram" + i + ".html"));
+            assertTrue(html.contains(".svg"), "Generated HTML should reference the diagram image");
+        }
+        assertTrue(logCapture.getCapturedOutput().contains("Prepared 3 diagrams of 3 documents with 2 workers"),
+                "Should report the diagram pre-pass");
+    }
+
+    @Test
+    void shouldBootAsciidoctorInBackground() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/simple-render-test").toURI());
+        Asciidoctor mockAsciidoctor = mock(Asciidoctor.class);
+        List<String> bootThreads = Collections.synchronizedList(new ArrayList<>());
+        mojo = new RenderMojo() {
+            @Override
+            protected Asciidoctor createAsciidoctor() {
+                bootThreads.add(Thread.currentThread().getName());
+                return mockAsciidoctor;
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+        configureDefaultMojo(mojo);
+        setField(mojo, "sourceDirectory", testSourceDir);
+
+        // When
+        mojo.execute();
+
+        // Then
+        assertEquals(List.of("asciidoctor-boot"), bootThreads, "Runtime should be booted once in the background");
+        verify(mockAsciidoctor).load(anyString(), any(Options.class));
+    }
+
+    @Test
+    void shouldNotBootAsciidoctorWhenNothingChanged() throws Exception {
+        // Given
+        File testSourceDir = new File(getClass().getResource("/functional/render/incremental-unchanged-test").toURI());
+        setField(mojo, "sourceDirectory", testSourceDir);
+        setField(mojo, "enableIncremental", true);
+        mojo.execute();
+
+        List<String> bootThreads = Collections.synchronizedList(new ArrayList<>());
+        RenderMojo upToDateMojo = new RenderMojo() {
+            @Override
+            protected Asciidoctor createAsciidoctor() {
+                bootThreads.add(Thread.currentThread().getName());
+                return mock(Asciidoctor.class);
+            }
+        };
+        upToDateMojo.setLog(new SystemStreamLog());
+        configureDefaultMojo(upToDateMojo);
+        setField(upToDateMojo, "sourceDirectory", testSourceDir);
+        setField(upToDateMojo, "enableIncremental", true);
+
+        // When
+        upToDateMojo.execute();
+
+        // Then
+        assertEquals(List.of(), bootThreads, "No runtime should be booted when no document needs rendering");
+    }
+}
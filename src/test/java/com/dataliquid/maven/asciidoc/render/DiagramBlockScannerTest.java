@@ -0,0 +1,127 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("DiagramBlockScanner")
+class DiagramBlockScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DiagramBlockScanner scanner = new DiagramBlockScanner();
+
+    @Test
+    @DisplayName("should detect diagram blocks")
+    void shouldDetectDiagramBlocks() {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+
+        // When / Then
+        assertTrue(scanner.containsDiagrams(document, "= Doc\n\n[plantuml]\n----\nA -> B\n----\n"));
+        assertTrue(scanner.containsDiagrams(document, "[ditaa, target=flow, format=png]\n....\n+--+\n....\n"));
+        assertTrue(scanner.containsDiagrams(document, "[graphviz#deps.wide]\n----\ndigraph {}\n----\n"));
+    }
+
+    @Test
+    @DisplayName("should detect diagram macros")
+    void shouldDetectDiagramMacros() {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+
+        // When / Then
+        assertTrue(scanner.containsDiagrams(document, "plantuml::diagrams/flow.puml[format=svg]\n"));
+        assertTrue(scanner.containsDiagrams(document, "See the inline plantuml:sequence.puml[] here.\n"));
+    }
+
+    @Test
+    @DisplayName("should ignore documents without diagrams")
+    void shouldIgnoreDocumentsWithoutDiagrams() {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+        String content = "= Doc\n\nWe use PlantUML and mermaid for diagrams.\n\n[source,plantuml]\n----\nA -> B\n----\n";
+
+        // When / Then
+        assertFalse(scanner.containsDiagrams(document, content));
+    }
+
+    @Test
+    @DisplayName("should detect diagrams in included files")
+    void shouldDetectDiagramsInIncludedFiles() throws IOException {
+        // Given
+        Path partials = Files.createDirectories(tempDir.resolve("partials"));
+        Files.writeString(partials.resolve("chapter.adoc"), "include::diagram.adoc[]\n");
+        Files.writeString(partials.resolve("diagram.adoc"), "[mermaid]\n----\ngraph TD\n----\n");
+        Path document = tempDir.resolve("doc.adoc");
+
+        // When / Then
+        assertTrue(scanner.containsDiagrams(document, "= Doc\n\ninclude::partials/chapter.adoc[leveloffset=+1]\n"));
+    }
+
+    @Test
+    @DisplayName("should assume diagrams for includes with attribute references")
+    void shouldAssumeDiagramsForIncludesWithAttributeReferences() {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+
+        // When / Then
+        assertTrue(scanner.containsDiagrams(document, "include::{partialsdir}/chapter.adoc[]\n"));
+    }
+
+    @Test
+    @DisplayName("should stop at circular includes")
+    void shouldStopAtCircularIncludes() throws IOException {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+        Files.writeString(document, "include::other.adoc[]\n");
+        Files.writeString(tempDir.resolve("other.adoc"), "include::doc.adoc[]\n");
+
+        // When / Then
+        assertFalse(scanner.containsDiagrams(document, Files.readString(document)));
+    }
+
+    @Test
+    @DisplayName("should extract diagram blocks with document header attributes")
+    void shouldExtractDiagramBlocksWithDocumentHeaderAttributes() {
+        // Given
+        Path document = tempDir.resolve("doc.adoc");
+        String content = "= Title\nAuthor Name\n:plantuml-config: style.cfg\n\nText\n\n.Flow\n"
+                + "[plantuml, flow, svg]\n----\nA -> B\n\nB -> C\n----\n\n[ditaa]\n+--+\n|  |\n\nMore text\n";
+
+        // When
+        List<DiagramBlock> blocks = scanner.findDiagramBlocks(document, content);
+
+        // Then
+        assertEquals(2, blocks.size());
+        assertEquals("plantuml", blocks.get(0).getType());
+        assertEquals(".Flow\n[plantuml, flow, svg]\n----\nA -> B\n\nB -> C\n----", blocks.get(0).getSource());
+        assertEquals(":plantuml-config: style.cfg", blocks.get(0).getHeader());
+        assertEquals("[ditaa]\n+--+\n|  |", blocks.get(1).getSource());
+    }
+
+    @Test
+    @DisplayName("should extract diagram block macros with their source file")
+    void shouldExtractDiagramBlockMacrosWithTheirSourceFile() throws IOException {
+        // Given
+        Path diagram = Files.writeString(tempDir.resolve("flow.puml"), "A -> B");
+        Path document = tempDir.resolve("doc.adoc");
+
+        // When
+        List<DiagramBlock> blocks = scanner
+                .findDiagramBlocks(document, "plantuml::flow.puml[format=svg]\n\nplantuml::missing.puml[]\n");
+
+        // Then
+        assertEquals(1, blocks.size());
+        assertEquals(diagram, blocks.get(0).getReferencedFile());
+    }
+}
@@ -0,0 +1,141 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("DiagramCache")
+class DiagramCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path cacheDir;
+    private Path imagesDir;
+    private Path metadataDir;
+
+    @BeforeEach
+    void setUp() {
+        cacheDir = tempDir.resolve("cache");
+        imagesDir = tempDir.resolve("images");
+        metadataDir = tempDir.resolve("metadata");
+    }
+
+    @Test
+    @DisplayName("should restore published diagram")
+    void shouldRestorePublishedDiagram() throws IOException {
+        // Given
+        DiagramCache cache = new DiagramCache(cacheDir, 1024 * 1024, "diagram=1.0", new SystemStreamLog());
+        Path generated = createGeneratedDiagram("flow.svg", "<svg/>");
+        cache.publish("abc", generated.resolve("images"), generated.resolve("metadata"));
+
+        // When
+        boolean restored = cache.restore("abc", imagesDir, metadataDir);
+
+        // Then
+        assertTrue(restored);
+        assertEquals("<svg/>", Files.readString(imagesDir.resolve("flow.svg")));
+        assertTrue(Files.exists(metadataDir.resolve("flow.svg.cache")));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    @DisplayName("should not serve diagrams of other tool versions")
+    void shouldNotServeDiagramsOfOtherToolVersions() throws IOException {
+        // Given
+        DiagramCache oldCache = new DiagramCache(cacheDir, 1024 * 1024, "diagram=1.0", new SystemStreamLog());
+        Path generated = createGeneratedDiagram("flow.svg", "<svg/>");
+        oldCache.publish("abc", generated.resolve("images"), generated.resolve("metadata"));
+
+        // When
+        DiagramCache newCache = new DiagramCache(cacheDir, 1024 * 1024, "diagram=2.0", new SystemStreamLog());
+        boolean restored = newCache.restore("abc", imagesDir, metadataDir);
+
+        // Then
+        assertFalse(restored);
+        assertEquals(1, newCache.getMisses());
+    }
+
+    @Test
+    @DisplayName("should address diagrams by content and format")
+    void shouldAddressDiagramsByContentAndFormat() throws IOException {
+        // Given
+        DiagramBlock block = new DiagramBlock("plantuml", "[plantuml]\n----\nA -> B\n----", "", null);
+        DiagramBlock sameBlock = new DiagramBlock("plantuml", "[plantuml]\n----\nA -> B\n----", "", null);
+        DiagramBlock otherBlock = new DiagramBlock("plantuml", "[plantuml]\n----\nA -> C\n----", "", null);
+
+        // When / Then
+        assertEquals(DiagramCache.keyFor(block, "svg"), DiagramCache.keyFor(sameBlock, "svg"));
+        assertNotEquals(DiagramCache.keyFor(block, "svg"), DiagramCache.keyFor(block, "png"));
+        assertNotEquals(DiagramCache.keyFor(block, "svg"), DiagramCache.keyFor(otherBlock, "svg"));
+    }
+
+    @Test
+    @DisplayName("should evict least recently used diagrams beyond the size limit")
+    void shouldEvictLeastRecentlyUsedDiagramsBeyondTheSizeLimit() throws IOException {
+        // Given
+        DiagramCache cache = new DiagramCache(cacheDir, 150, "diagram=1.0", new SystemStreamLog());
+        Path oldDiagram = createGeneratedDiagram("old.svg", "x".repeat(100));
+        Path newDiagram = createGeneratedDiagram("new.svg", "y".repeat(100));
+        cache.publish("old", oldDiagram.resolve("images"), oldDiagram.resolve("empty"));
+        cache.publish("new", newDiagram.resolve("images"), newDiagram.resolve("empty"));
+        Path partition;
+        try (Stream<Path> partitions = Files.list(cacheDir)) {
+            partition = partitions.filter(Files::isDirectory).findFirst().orElseThrow();
+        }
+        Files.setLastModifiedTime(partition.resolve("old"), FileTime.fromMillis(1000));
+
+        // When
+        cache.evict();
+
+        // Then
+        assertFalse(Files.exists(partition.resolve("old")));
+        assertTrue(Files.exists(partition.resolve("new")));
+    }
+
+    @Test
+    @DisplayName("should neither count nor evict staging directories")
+    void shouldNeitherCountNorEvictStagingDirectories() throws IOException {
+        // Given
+        DiagramCache cache = new DiagramCache(cacheDir, 150, "diagram=1.0", new SystemStreamLog());
+        Path diagram = createGeneratedDiagram("cached.svg", "x".repeat(100));
+        cache.publish("cached", diagram.resolve("images"), diagram.resolve("empty"));
+        Path partition;
+        try (Stream<Path> partitions = Files.list(cacheDir)) {
+            partition = partitions.filter(Files::isDirectory).findFirst().orElseThrow();
+        }
+        // A concurrent build publishing a diagram
+        Path staging = partition.resolve(".tmp-0b6f2c1e-5d7a-4a8e-9c3b-2f1d0e4a6b7c");
+        Files.createDirectories(staging.resolve("images"));
+        Files.writeString(staging.resolve("images").resolve("pending.svg"), "y".repeat(100));
+
+        // When
+        cache.evict();
+
+        // Then
+        assertTrue(Files.exists(partition.resolve("cached")));
+        assertTrue(Files.exists(staging.resolve("images").resolve("pending.svg")));
+    }
+
+    private Path createGeneratedDiagram(String name, String content) throws IOException {
+        Path generated = Files.createTempDirectory(tempDir, "generated");
+        Files.createDirectories(generated.resolve("images"));
+        Files.createDirectories(generated.resolve("metadata"));
+        Files.writeString(generated.resolve("images").resolve(name), content);
+        Files.writeString(generated.resolve("metadata").resolve(name + ".cache"), "{\"checksum\":\"1\"}");
+        return generated;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.asciidoctor.Options;
+import org.asciidoctor.SafeMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("RenderConfiguration")
+class RenderConfigurationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("should use the project directory as base directory of all documents")
+    void shouldUseProjectDirectoryAsBaseDirectory() {
+        // Given
+        RenderConfiguration configuration = new RenderConfiguration(SafeMode.SAFE, Map.of("toc", "left"), null,
+                tempDir);
+
+        // When
+        Options options = configuration.getOptions();
+
+        // Then
+        assertEquals(tempDir.toAbsolutePath().toString(), options.map().get("base_dir"));
+        assertEquals(tempDir.toAbsolutePath(), configuration.getBaseDir());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> attributes = (Map<String, Object>) options.map().get("attributes");
+        assertEquals("left", attributes.get("toc"));
+        assertFalse(attributes.containsKey("docname"));
+        assertFalse(attributes.containsKey("docfile"));
+    }
+
+    @Test
+    @DisplayName("should keep base directory when overriding attributes")
+    void shouldKeepBaseDirectoryWhenOverridingAttributes() {
+        // Given
+        RenderConfiguration configuration = new RenderConfiguration(SafeMode.SAFE,
+                Map.of("imagesoutdir", "images", "toc", "left"), null, tempDir);
+
+        // When
+        Options options = configuration.optionsWith(Map.of("imagesoutdir", "generated"));
+
+        // Then
+        assertEquals(tempDir.toAbsolutePath().toString(), options.map().get("base_dir"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> attributes = (Map<String, Object>) options.map().get("attributes");
+        assertEquals("generated", attributes.get("imagesoutdir"));
+        assertEquals("left", attributes.get("toc"));
+    }
+
+    @Test
+    @DisplayName("should leave base directory unset without project directory")
+    void shouldLeaveBaseDirectoryUnsetWithoutProjectDirectory() {
+        // Given
+        RenderConfiguration configuration = new RenderConfiguration(SafeMode.SAFE, Map.of(), null);
+
+        // When
+        Options options = configuration.getOptions();
+
+        // Then
+        assertNull(options.map().get("base_dir"));
+        assertEquals(Path.of("").toAbsolutePath(), configuration.getBaseDir());
+    }
+}
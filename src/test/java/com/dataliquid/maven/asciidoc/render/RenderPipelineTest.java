@@ -0,0 +1,131 @@
+package com.dataliquid.maven.asciidoc.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("RenderPipeline")
+class RenderPipelineTest {
+
+    @Test
+    @DisplayName("should pass items through all stages in order")
+    void shouldPassItemsThroughAllStagesInOrder() throws Exception {
+        // Given
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+        try (RenderPipeline<String> pipeline = new RenderPipeline<>(2, new SystemStreamLog())) {
+            pipeline.addStage("read", 1, item -> steps.add("read " + item));
+            pipeline.addStage("write", 1, item -> steps.add("write " + item));
+            pipeline.start();
+
+            // When
+            String result = pipeline.submit("a").get();
+
+            // Then
+            assertEquals("a", result);
+            assertEquals(List.of("read a", "write a"), steps);
+            assertEquals(1, pipeline.getStatistics().get(1).getDocuments());
+        }
+    }
+
+    @Test
+    @DisplayName("should skip remaining stages for failed items")
+    void shouldSkipRemainingStagesForFailedItems() throws Exception {
+        // Given
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        try (RenderPipeline<String> pipeline = new RenderPipeline<>(2, new SystemStreamLog())) {
+            pipeline.addStage("read", 1, item -> {
+                if (item.equals("broken")) {
+                    throw new IOException("Cannot read " + item);
+                }
+                return true;
+            });
+            pipeline.addStage("write", 1, written::add);
+            pipeline.start();
+
+            // When
+            Future<String> broken = pipeline.submit("broken");
+            Future<String> valid = pipeline.submit("valid");
+
+            // Then
+            ExecutionException failure = assertThrows(ExecutionException.class, broken::get);
+            assertInstanceOf(IOException.class, failure.getCause());
+            assertEquals("valid", valid.get());
+            assertEquals(List.of("valid"), written);
+        }
+    }
+
+    @Test
+    @DisplayName("should complete items early when a stage finishes them")
+    void shouldCompleteItemsEarlyWhenStageFinishesThem() throws Exception {
+        // Given
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        try (RenderPipeline<String> pipeline = new RenderPipeline<>(2, new SystemStreamLog())) {
+            pipeline.addStage("convert", 1, item -> !item.isEmpty());
+            pipeline.addStage("write", 1, written::add);
+            pipeline.start();
+
+            // When
+            String result = pipeline.submit("").get();
+
+            // Then
+            assertEquals("", result);
+            assertTrue(written.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("should bound queue depth of blocked stages")
+    void shouldBoundQueueDepthOfBlockedStages() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        try (RenderPipeline<Integer> pipeline = new RenderPipeline<>(2, new SystemStreamLog())) {
+            pipeline.addStage("read", 1, item -> true);
+            pipeline.addStage("write", 1, item -> {
+                release.await();
+                return true;
+            });
+            pipeline.start();
+
+            List<Future<Integer>> results = new ArrayList<>();
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        results.add(pipeline.submit(i));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+
+            // When
+            producer.join(200);
+            boolean blocked = producer.isAlive();
+            release.countDown();
+            producer.join();
+
+            // Then
+            assertTrue(blocked, "Submitting should block while the stages are full");
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Integer.valueOf(i), results.get(i).get());
+            }
+            for (RenderPipeline.StageStatistics stage : pipeline.getStatistics()) {
+                assertEquals(10, stage.getDocuments());
+                assertTrue(stage.getMaxQueueDepth() <= 2, "Queue depth should not exceed the capacity");
+            }
+        }
+    }
+}
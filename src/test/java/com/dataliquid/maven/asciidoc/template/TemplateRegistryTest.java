@@ -0,0 +1,82 @@
+package com.dataliquid.maven.asciidoc.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("TemplateRegistry")
+class TemplateRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("should compile template file once for all documents")
+    void shouldCompileTemplateFileOnceForAllDocuments() throws Exception {
+        // Given
+        Log log = mock(Log.class);
+        TemplateRegistry registry = new TemplateRegistry(log);
+        String templateFile = Files.writeString(tempDir.resolve("page.st"), "<main>$html$</main>").toString();
+
+        // When
+        String first = registry.getFileTemplate(templateFile).render(documentWithHtml("<p>One</p>"));
+        Files.writeString(Path.of(templateFile), "<article>$html$</article>");
+        String second = registry.getFileTemplate(templateFile).render(documentWithHtml("<p>Two</p>"));
+
+        // Then
+        assertEquals("<main><p>One</p></main>", first);
+        assertEquals("<main><p>Two</p></main>", second);
+        verify(log, times(1)).debug(contains("Initializing StringTemplate"));
+    }
+
+    @Test
+    @DisplayName("should share compiled template between threads")
+    void shouldShareCompiledTemplateBetweenThreads() throws Exception {
+        // Given
+        TemplateRegistry registry = new TemplateRegistry(mock(Log.class));
+        String templateFile = Files.writeString(tempDir.resolve("page.st"), "<main>$html$</main>").toString();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        List<Future<StringTemplateProcessor>> processors = new ArrayList<>();
+        List<Future<String>> outputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                String html = "<p>" + i + "</p>";
+                processors.add(executor.submit(() -> registry.getFileTemplate(templateFile)));
+                outputs
+                        .add(executor
+                                .submit(() -> registry.getFileTemplate(templateFile).render(documentWithHtml(html))));
+            }
+
+            // Then
+            for (int i = 0; i < 8; i++) {
+                assertSame(processors.get(0).get(), processors.get(i).get());
+                assertEquals("<main><p>" + i + "</p></main>", outputs.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static DocumentContext documentWithHtml(String html) {
+        return new DocumentContext(html, Map.of(), Map.of(), Map.of());
+    }
+}
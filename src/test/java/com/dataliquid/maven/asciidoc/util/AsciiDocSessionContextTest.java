@@ -0,0 +1,163 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.asciidoctor.Asciidoctor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("AsciiDocSessionContext")
+class AsciiDocSessionContextTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AsciiDocSessionContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = new AsciiDocSessionContext();
+    }
+
+    @Test
+    @DisplayName("should scan source directory once per pattern combination")
+    void shouldScanSourceDirectoryOncePerPatternCombination() throws IOException {
+        // Given
+        Files.writeString(tempDir.resolve("first.adoc"), "= First");
+        String[] includes = { "*.adoc" };
+        List<Path> firstScan = context.getMatchedFiles(tempDir.toFile(), includes, null);
+        Files.writeString(tempDir.resolve("second.adoc"), "= Second");
+
+        // When
+        List<Path> secondScan = context.getMatchedFiles(tempDir.toFile(), includes, null);
+        List<Path> otherPatterns = context.getMatchedFiles(tempDir.toFile(), new String[] { "**/*.adoc" }, null);
+
+        // Then
+        assertEquals(1, firstScan.size());
+        assertEquals(firstScan, secondScan);
+        assertEquals(2, otherPatterns.size());
+    }
+
+    @Test
+    @DisplayName("should scan separately when matching case sensitively")
+    void shouldScanSeparatelyWhenMatchingCaseSensitively() throws IOException {
+        // Given
+        Files.writeString(tempDir.resolve("Guide.adoc"), "= Guide");
+        String[] includes = { "guide.adoc" };
+        List<Path> insensitiveScan = context.getMatchedFiles(tempDir.toFile(), includes, null);
+
+        // When
+        List<Path> sensitiveScan = context.getMatchedFiles(tempDir.toFile(), includes, null, true, null, null);
+
+        // Then
+        assertEquals(1, insensitiveScan.size());
+        assertTrue(sensitiveScan.isEmpty());
+    }
+
+    @Test
+    @DisplayName("should share front matter parser")
+    void shouldShareFrontMatterParser() {
+        // When / Then
+        assertSame(context.getFrontMatterParser(new SystemStreamLog()),
+                context.getFrontMatterParser(new SystemStreamLog()));
+    }
+
+    @Test
+    @DisplayName("should hand released runtime to later goal")
+    void shouldHandReleasedRuntimeToLaterGoal() {
+        // Given
+        AsciidoctorRuntimeCache.RuntimeKey plainKey = runtimeKey();
+        Asciidoctor runtime = context.acquireAsciidoctor(plainKey, () -> mock(Asciidoctor.class));
+        assertTrue(context.releaseAsciidoctor(plainKey, runtime));
+
+        // When
+        Asciidoctor reused = context
+                .acquireAsciidoctor(runtimeKey("asciidoctor-diagram"), () -> mock(Asciidoctor.class));
+
+        // Then
+        assertSame(runtime, reused);
+    }
+
+    @Test
+    @DisplayName("should not hand runtime with extra libraries to plain goal")
+    void shouldNotHandRuntimeWithExtraLibrariesToPlainGoal() {
+        // Given
+        AsciidoctorRuntimeCache.RuntimeKey diagramKey = runtimeKey("asciidoctor-diagram");
+        Asciidoctor diagramRuntime = context.acquireAsciidoctor(diagramKey, () -> mock(Asciidoctor.class));
+        context.releaseAsciidoctor(diagramKey, diagramRuntime);
+
+        // When
+        Asciidoctor plain = context.acquireAsciidoctor(runtimeKey(), () -> mock(Asciidoctor.class));
+
+        // Then
+        assertNotSame(diagramRuntime, plain);
+    }
+
+    @Test
+    @DisplayName("should keep only one idle runtime per key")
+    void shouldKeepOnlyOneIdleRuntimePerKey() {
+        // Given
+        AsciidoctorRuntimeCache.RuntimeKey key = runtimeKey();
+        Asciidoctor first = context.acquireAsciidoctor(key, () -> mock(Asciidoctor.class));
+        Asciidoctor second = context.acquireAsciidoctor(key, () -> mock(Asciidoctor.class));
+
+        // When
+        boolean firstKept = context.releaseAsciidoctor(key, first);
+        boolean secondKept = context.releaseAsciidoctor(key, second);
+
+        // Then
+        assertNotSame(first, second);
+        assertTrue(firstKept);
+        assertFalse(secondKept);
+    }
+
+    @Test
+    @DisplayName("should shut down idle runtimes when session ends")
+    void shouldShutDownIdleRuntimesWhenSessionEnds() {
+        // Given
+        ExecutionListener mavenListener = mock(ExecutionListener.class);
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setExecutionListener(mavenListener);
+        MavenSession session = mock(MavenSession.class);
+        when(session.getRequest()).thenReturn(request);
+        AsciiDocSessionContext sessionContext = new AsciiDocSessionContext(session);
+
+        AsciidoctorRuntimeCache.RuntimeKey key = runtimeKey();
+        Asciidoctor runtime = sessionContext.acquireAsciidoctor(key, () -> mock(Asciidoctor.class));
+        sessionContext.releaseAsciidoctor(key, runtime);
+        ExecutionEvent event = mock(ExecutionEvent.class);
+
+        // When
+        request.getExecutionListener().mojoSucceeded(event);
+        request.getExecutionListener().sessionEnded(event);
+
+        // Then
+        verify(runtime).shutdown();
+        verify(mavenListener).mojoSucceeded(event);
+        verify(mavenListener).sessionEnded(event);
+    }
+
+    private AsciidoctorRuntimeCache.RuntimeKey runtimeKey(String... libraries) {
+        return new AsciidoctorRuntimeCache.RuntimeKey(getClass().getClassLoader(), "SAFE", List.of(libraries));
+    }
+}
@@ -0,0 +1,123 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.asciidoctor.Asciidoctor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AsciidoctorRuntimeCache")
+class AsciidoctorRuntimeCacheTest {
+
+    private AsciidoctorRuntimeCache cache;
+    private AsciidoctorRuntimeCache.RuntimeKey safeKey;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AsciidoctorRuntimeCache();
+        safeKey = new AsciidoctorRuntimeCache.RuntimeKey(getClass().getClassLoader(), "SAFE", List.of());
+    }
+
+    @Test
+    @DisplayName("should reuse released runtime for equal key")
+    void shouldReuseReleasedRuntimeForEqualKey() {
+        // Given
+        Asciidoctor first = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+        assertTrue(cache.release(first));
+
+        // When
+        AsciidoctorRuntimeCache.RuntimeKey sameKey = new AsciidoctorRuntimeCache.RuntimeKey(
+                getClass().getClassLoader(), "safe", List.of());
+        Asciidoctor second = cache.acquire(sameKey, () -> mock(Asciidoctor.class));
+
+        // Then
+        assertSame(first, second);
+        assertEquals(0, cache.size());
+        verify(first, never()).shutdown();
+    }
+
+    @Test
+    @DisplayName("should not share runtime between different keys")
+    void shouldNotShareRuntimeBetweenDifferentKeys() {
+        // Given
+        Asciidoctor plain = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+        cache.release(plain);
+
+        // When
+        AsciidoctorRuntimeCache.RuntimeKey diagramKey = new AsciidoctorRuntimeCache.RuntimeKey(
+                getClass().getClassLoader(), "SAFE", List.of("asciidoctor-diagram"));
+        Asciidoctor diagram = cache.acquire(diagramKey, () -> mock(Asciidoctor.class));
+
+        // Then
+        assertNotSame(plain, diagram);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("should never lease the same runtime twice")
+    void shouldNeverLeaseTheSameRuntimeTwice() {
+        // When
+        Asciidoctor first = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+        Asciidoctor second = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+
+        // Then
+        assertNotSame(first, second);
+    }
+
+    @Test
+    @DisplayName("should shut down least recently used runtime beyond the limit")
+    void shouldShutDownLeastRecentlyUsedRuntimeBeyondTheLimit() {
+        // Given
+        cache.setMaxIdleRuntimes(1);
+        Asciidoctor first = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+        Asciidoctor second = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+
+        // When
+        cache.release(first);
+        cache.release(second);
+
+        // Then
+        assertEquals(1, cache.size());
+        verify(first).shutdown();
+        verify(second, never()).shutdown();
+    }
+
+    @Test
+    @DisplayName("should reject runtimes that were not leased from the cache")
+    void shouldRejectRuntimesThatWereNotLeasedFromTheCache() {
+        // Given
+        Asciidoctor foreign = mock(Asciidoctor.class);
+
+        // When
+        boolean released = cache.release(foreign);
+
+        // Then
+        assertFalse(released);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("should shut down idle runtimes on clear")
+    void shouldShutDownIdleRuntimesOnClear() {
+        // Given
+        Asciidoctor runtime = cache.acquire(safeKey, () -> mock(Asciidoctor.class));
+        cache.release(runtime);
+
+        // When
+        cache.clear();
+
+        // Then
+        assertEquals(0, cache.size());
+        verify(runtime).shutdown();
+    }
+}
@@ -0,0 +1,75 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("ConfigurationFingerprint")
+class ConfigurationFingerprintTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("should not depend on attribute order")
+    void shouldNotDependOnAttributeOrder() {
+        // Given
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("toc", "left");
+        first.put("icons", "font");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("icons", "font");
+        second.put("toc", "left");
+
+        // When
+        ConfigurationFingerprint firstFingerprint = new ConfigurationFingerprint();
+        firstFingerprint.put("attributes", first);
+        ConfigurationFingerprint secondFingerprint = new ConfigurationFingerprint();
+        secondFingerprint.put("attributes", second);
+
+        // Then
+        assertEquals(firstFingerprint.getEntries(), secondFingerprint.getEntries());
+    }
+
+    @Test
+    @DisplayName("should change when a file in a template directory changes")
+    void shouldChangeWhenFileInTemplateDirectoryChanges() throws IOException {
+        // Given
+        Path templates = Files.createDirectories(tempDir.resolve("templates"));
+        Path template = Files.writeString(templates.resolve("paragraph.html.slim"), "p = content");
+        ConfigurationFingerprint before = new ConfigurationFingerprint();
+        before.putFile("templateDir", templates);
+
+        // When
+        Files.writeString(template, "div = content");
+        ConfigurationFingerprint after = new ConfigurationFingerprint();
+        after.putFile("templateDir", templates);
+
+        // Then
+        assertNotEquals(before.getEntries(), after.getEntries());
+    }
+
+    @Test
+    @DisplayName("should record missing template file")
+    void shouldRecordMissingTemplateFile() throws IOException {
+        // Given
+        ConfigurationFingerprint missingFile = new ConfigurationFingerprint();
+        ConfigurationFingerprint missingResource = new ConfigurationFingerprint();
+
+        // When
+        missingFile.putFile("template", tempDir.resolve("missing.st"));
+        missingResource.putResource("template", getClass().getClassLoader(), "templates/missing.st");
+
+        // Then
+        assertEquals(missingFile.getEntries(), missingResource.getEntries());
+    }
+}
@@ -5,13 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import org.apache.maven.plugin.logging.Log;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -197,6 +201,182 @@ class FilePatternMatcherTest {
         }
     }
 
+    @Nested
+    @DisplayName("Pattern Semantics")
+    class PatternSemanticsTests {
+
+        @Test
+        @DisplayName("should match files case sensitively when requested")
+        void shouldMatchFilesCaseSensitivelyWhenRequested() throws IOException {
+            // Given
+            createTestFile("doc.adoc");
+            createTestFile("Doc.ADOC", "upper");
+
+            // When
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, new String[] { "**/*.adoc" },
+                    new String[0], true);
+            List<File> files = matcher.getMatchedFiles();
+
+            // Then
+            assertEquals(1, files.size());
+            assertEquals("doc.adoc", files.get(0).getName());
+        }
+
+        @Test
+        @DisplayName("should exclude everything below directory pattern with trailing slash")
+        void shouldExcludeEverythingBelowDirectoryPatternWithTrailingSlash() throws IOException {
+            // Given
+            createTestFile("doc.adoc");
+            createTestFile("module.adoc", "node_modules/package/docs");
+
+            // When
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, new String[] { "**/*.adoc" },
+                    new String[] { "node_modules/" });
+            List<File> files = matcher.getMatchedFiles();
+
+            // Then
+            assertEquals(1, files.size());
+            assertEquals("doc.adoc", files.get(0).getName());
+        }
+
+        @Test
+        @DisplayName("should match wildcards within a single directory")
+        void shouldMatchWildcardsWithinSingleDirectory() throws IOException {
+            // Given
+            createTestFile("a1.adoc", "guide");
+            createTestFile("a12.adoc", "guide");
+            createTestFile("a2.adoc", "guide/nested");
+            createTestFile("a3.adoc");
+
+            // When
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, new String[] { "guide/a?.adoc" },
+                    new String[0]);
+            List<File> files = matcher.getMatchedFiles();
+
+            // Then
+            assertEquals(1, files.size());
+            assertEquals("a1.adoc", files.get(0).getName());
+        }
+
+        @Test
+        @DisplayName("should return files sorted by relative path")
+        void shouldReturnFilesSortedByRelativePath() throws IOException {
+            // Given
+            createTestFile("b.adoc");
+            createTestFile("c.adoc", "a");
+            createTestFile("a.adoc");
+
+            // When
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, null, null);
+            List<File> files = matcher.getMatchedFiles();
+
+            // Then
+            assertEquals(List.of("a.adoc", "c.adoc", "b.adoc"),
+                    files.stream().map(File::getName).collect(Collectors.toList()));
+        }
+
+        @Test
+        @DisplayName("should find same files when walking in parallel")
+        void shouldFindSameFilesWhenWalkingInParallel() throws IOException {
+            // Given
+            createTestFile("root.adoc");
+            createTestFile("one.adoc", "first/nested");
+            createTestFile("two.adoc", "second");
+            createTestFile("skipped.adoc", "target");
+            String[] includes = { "**/*.adoc" };
+            String[] excludes = { "**/target/**" };
+            List<File> sequential = new FilePatternMatcher(baseDirectory, includes, excludes).getMatchedFiles();
+
+            // When
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, includes, excludes);
+            matcher.setParallel(true);
+            List<File> files = matcher.getMatchedFiles();
+
+            // Then
+            assertEquals(3, files.size());
+            assertEquals(sequential, files);
+        }
+    }
+
+    @Nested
+    @DisplayName("Scan Cache")
+    class ScanCacheTests {
+
+        private Path cacheFile;
+        private Log log;
+
+        @BeforeEach
+        void setUp() {
+            cacheFile = tempDir.resolve("work/.asciidoc.scan");
+            log = mock(Log.class);
+        }
+
+        @Test
+        @DisplayName("should find files added to changed directory")
+        void shouldFindFilesAddedToChangedDirectory() throws IOException {
+            // Given
+            createTestFile("first.adoc", "docs");
+            makeOld(tempDir.resolve("docs"));
+            scan("**/*.adoc");
+
+            // When
+            createTestFile("second.adoc", "docs");
+            List<File> files = scan("**/*.adoc");
+
+            // Then
+            assertEquals(2, files.size());
+        }
+
+        @Test
+        @DisplayName("should not list directories with unchanged modification time")
+        void shouldNotListDirectoriesWithUnchangedModificationTime() throws IOException {
+            // Given
+            createTestFile("first.adoc", "docs");
+            FileTime recorded = makeOld(tempDir.resolve("docs"));
+            scan("**/*.adoc");
+
+            // When - a change the directory time does not reflect
+            createTestFile("second.adoc", "docs");
+            Files.setLastModifiedTime(tempDir.resolve("docs"), recorded);
+            List<File> files = scan("**/*.adoc");
+
+            // Then
+            assertEquals(1, files.size());
+            assertEquals("first.adoc", files.get(0).getName());
+        }
+
+        @Test
+        @DisplayName("should scan again when patterns change")
+        void shouldScanAgainWhenPatternsChange() throws IOException {
+            // Given
+            createTestFile("doc.adoc", "docs");
+            createTestFile("notes.txt", "docs");
+            makeOld(tempDir.resolve("docs"));
+            scan("**/*.adoc");
+
+            // When
+            List<File> files = scan("**/*.txt");
+
+            // Then
+            assertEquals(1, files.size());
+            assertEquals("notes.txt", files.get(0).getName());
+        }
+
+        private List<File> scan(String include) {
+            FilePatternMatcher matcher = new FilePatternMatcher(baseDirectory, new String[] { include },
+                    new String[] { "work/" });
+            matcher.setScanCache(cacheFile, log);
+            return matcher.getMatchedFiles();
+        }
+
+        private FileTime makeOld(Path directory) throws IOException {
+            FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+            Files.setLastModifiedTime(directory, old);
+            Files.setLastModifiedTime(tempDir, old);
+            return old;
+        }
+    }
+
     @Nested
     @DisplayName("hasMatchedFiles")
     class HasMatchedFilesTests {
@@ -11,13 +11,19 @@ import static org.mockito.Mockito.verifyNoInteractions;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.stream.Collectors;
 
 import org.apache.maven.plugin.logging.Log;
 import org.junit.jupiter.api.BeforeEach;
@@ -99,8 +105,8 @@ class IncrementalBuildManagerTest {
         @DisplayName("should handle corrupt hash cache file")
         void shouldHandleCorruptHashCacheFile() throws Exception {
             // Given
-            File hashFile = new File(workDirectory, ".asciidoc.hashes");
-            Files.writeString(hashFile.toPath(), "corrupted\ncontent\nthat\nis\nnot\nvalid\nproperties");
+            File stateFile = new File(workDirectory, ".asciidoc.state");
+            Files.writeString(stateFile.toPath(), "corrupted\ncontent\nthat\nis\nnot\nvalid\nstate");
 
             // When
             IncrementalBuildManager newManager = new IncrementalBuildManager(workDirectory, mockLog);
@@ -142,7 +148,7 @@ class IncrementalBuildManagerTest {
 
             // Then
             assertTrue(newWorkDir.exists());
-            assertTrue(new File(newWorkDir, ".asciidoc.hashes").exists());
+            assertTrue(new File(newWorkDir, ".asciidoc.state").exists());
         }
 
         @Test
@@ -160,10 +166,34 @@ class IncrementalBuildManagerTest {
             manager.saveHashCache();
 
             // Then
-            File hashFile = new File(workDirectory, ".asciidoc.hashes");
-            Properties props = new Properties();
-            props.load(Files.newInputStream(hashFile.toPath()));
-            assertNotEquals("abc123", props.getProperty(sourceFile.toString()));
+            IncrementalStateStore.Table hashes = loadHashes();
+            assertNotEquals("abc123", hashes.get(sourceFile.toString()));
+        }
+
+        @Test
+        @DisplayName("should not rewrite state when nothing changed")
+        void shouldNotRewriteStateWhenNothingChanged() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "content");
+            Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+            Files.writeString(outputFile, "output");
+            manager.needsRegeneration(sourceFile, outputFile);
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+            Path stateFile = tempDir.resolve(".asciidoc.state");
+            FileTime savedAt = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+            Files.setLastModifiedTime(stateFile, savedAt);
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            nextBuild.needsRegeneration(sourceFile, outputFile);
+            nextBuild.removeStaleEntries(Map.of(sourceFile.toString(), sourceFile));
+            nextBuild.saveHashCache();
+
+            // Then
+            assertEquals(savedAt, Files.getLastModifiedTime(stateFile));
         }
     }
 
@@ -259,6 +289,464 @@ class IncrementalBuildManagerTest {
         }
     }
 
+    @Nested
+    @DisplayName("Relocation")
+    class RelocationTests {
+
+        @Test
+        @DisplayName("should keep cache valid when project is moved")
+        void shouldKeepCacheValidWhenProjectIsMoved() throws Exception {
+            // Given
+            Path checkout = Files.createDirectories(tempDir.resolve("checkout"));
+            Path sourceDirectory = Files.createDirectories(checkout.resolve("src/docs"));
+            Files.writeString(sourceDirectory.resolve("_shared.adoc"), "Shared text");
+            Path sourceFile = sourceDirectory.resolve("page.adoc");
+            Files.writeString(sourceFile, "= Page\n\ninclude::_shared.adoc[]\n");
+            File work = checkout.resolve("target/asciidoc-work").toFile();
+            IncrementalBuildManager firstCheckout = new IncrementalBuildManager(work, sourceDirectory, mockLog,
+                    new DependencyScanner(), HashAlgorithm.SHA_256);
+            firstCheckout.updateHash(sourceFile);
+            firstCheckout.saveHashCache();
+
+            // When
+            Path moved = Files.move(checkout, tempDir.resolve("other-agent"));
+            Path movedSources = moved.resolve("src/docs");
+            Path movedOutput = Files.writeString(moved.resolve("page.html"), "output");
+            IncrementalBuildManager secondCheckout = new IncrementalBuildManager(
+                    moved.resolve("target/asciidoc-work").toFile(), movedSources, mockLog, new DependencyScanner(),
+                    HashAlgorithm.SHA_256);
+
+            // Then
+            assertFalse(secondCheckout.needsRegeneration(movedSources.resolve("page.adoc"), movedOutput));
+        }
+
+        @Test
+        @DisplayName("should keep outputs valid when output directory is moved apart from sources")
+        void shouldKeepOutputsValidWhenOutputDirectoryIsMovedApartFromSources() throws Exception {
+            // Given
+            Path checkout = Files.createDirectories(tempDir.resolve("checkout"));
+            Path sourceDirectory = Files.createDirectories(checkout.resolve("src/docs"));
+            Path sourceFile = Files.writeString(sourceDirectory.resolve("page.adoc"), "= Page");
+            Path work = checkout.resolve("target/asciidoc-work");
+            Path image = Files.writeString(Files.createDirectories(work.resolve("images")).resolve("flow.svg"),
+                    "<svg/>");
+            // Outside the parent of the source tree
+            Path site = Files.createDirectories(tempDir.resolve("site/html"));
+            Path outputFile = Files.writeString(site.resolve("page.html"), "output");
+            IncrementalBuildManager firstBuild = new IncrementalBuildManager(work.toFile(), sourceDirectory, site,
+                    mockLog, new DependencyScanner(), HashAlgorithm.SHA_256);
+            firstBuild.updateHash(sourceFile, List.of(outputFile, image));
+            firstBuild.saveHashCache();
+
+            // When
+            Path movedCheckout = Files.move(checkout, Files.createDirectories(tempDir.resolve("agent")).resolve("ws"));
+            Path movedSite = Files.move(tempDir.resolve("site"), tempDir.resolve("published"));
+            IncrementalBuildManager secondBuild = new IncrementalBuildManager(
+                    movedCheckout.resolve("target/asciidoc-work").toFile(), movedCheckout.resolve("src/docs"),
+                    movedSite.resolve("html"), mockLog, new DependencyScanner(), HashAlgorithm.SHA_256);
+
+            // Then
+            assertFalse(secondBuild.needsRegeneration(movedCheckout.resolve("src/docs/page.adoc"),
+                    movedSite.resolve("html/page.html")));
+        }
+
+        @Test
+        @DisplayName("should record paths relative to source directory")
+        void shouldRecordPathsRelativeToSourceDirectory() throws Exception {
+            // Given
+            Path sourceDirectory = Files.createDirectories(tempDir.resolve("docs"));
+            Path guide = Files.createDirectories(sourceDirectory.resolve("guide"));
+            Path sourceFile = Files.writeString(guide.resolve("intro.adoc"), "content");
+            IncrementalBuildManager relativeManager = new IncrementalBuildManager(workDirectory, sourceDirectory,
+                    mockLog, new DependencyScanner(), HashAlgorithm.SHA_256);
+
+            // When
+            relativeManager.updateHash(sourceFile);
+            relativeManager.saveHashCache();
+
+            // Then
+            assertEquals(List.of("guide/intro.adoc"), List.copyOf(loadHashes().keys()));
+        }
+    }
+
+    @Nested
+    @DisplayName("Source Cache")
+    class SourceCacheTests {
+
+        @Test
+        @DisplayName("should not retain content of sources that are only touched")
+        void shouldNotRetainContentOfSourcesThatAreOnlyTouched() throws Exception {
+            // Given
+            Path sourceFile = Files.writeString(tempDir.resolve("test.adoc"), "content");
+            Path outputFile = Files.writeString(tempDir.resolve("test.html"), "output");
+            long now = System.currentTimeMillis();
+            Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(now - 3_600_000));
+            manager.updateHash(sourceFile, List.of(outputFile));
+            manager.saveHashCache();
+
+            // When - the modification time changes but the content does not
+            Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(now - 1_800_000));
+            SourceCache sourceCache = new SourceCache();
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            nextBuild.setSourceCache(sourceCache);
+            boolean needsRegeneration = nextBuild.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertFalse(needsRegeneration);
+            assertEquals(0, sourceCache.getRetainedBytes());
+        }
+
+        @Test
+        @DisplayName("should record hash of content shared with rendering")
+        void shouldRecordHashOfContentSharedWithRendering() throws Exception {
+            // Given
+            SourceCache sourceCache = new SourceCache();
+            manager.setSourceCache(sourceCache);
+            Path sourceFile = Files.writeString(tempDir.resolve("test.adoc"), "rendered");
+            Path outputFile = Files.writeString(tempDir.resolve("test.html"), "output");
+            assertTrue(manager.needsRegeneration(sourceFile, outputFile));
+
+            // When - the source is edited while the content read for hashing is rendered
+            Files.writeString(sourceFile, "edited during the build");
+            String rendered = sourceCache.get(sourceFile).getText();
+            manager.updateHash(sourceFile);
+
+            // Then
+            byte[] expected = MessageDigest
+                    .getInstance("SHA-256")
+                    .digest("rendered".getBytes(StandardCharsets.UTF_8));
+            assertEquals("rendered", rendered);
+            assertEquals(HexFormat.of().formatHex(expected), getHashFromCache(sourceFile));
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+    }
+
+    @Nested
+    @DisplayName("Outputs")
+    class OutputTests {
+
+        private Path sourceFile;
+        private Path outputFile;
+        private Path imageFile;
+
+        @BeforeEach
+        void renderDocument() throws IOException {
+            sourceFile = Files.writeString(tempDir.resolve("test.adoc"), "content");
+            outputFile = Files.writeString(tempDir.resolve("test.html"), "output");
+            imageFile = Files.writeString(Files.createDirectories(tempDir.resolve("images")).resolve("diag.svg"),
+                    "<svg/>");
+            manager.updateHash(sourceFile, List.of(outputFile, imageFile));
+        }
+
+        @Test
+        @DisplayName("should not regenerate when all outputs are unchanged")
+        void shouldNotRegenerateWhenAllOutputsAreUnchanged() {
+            // When
+            boolean result = manager.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertFalse(result);
+        }
+
+        @Test
+        @DisplayName("should regenerate when generated image is missing")
+        void shouldRegenerateWhenGeneratedImageIsMissing() throws IOException {
+            // Given
+            Files.delete(imageFile);
+
+            // When
+            boolean result = manager.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertTrue(result);
+        }
+
+        @Test
+        @DisplayName("should regenerate and delete modified output")
+        void shouldRegenerateAndDeleteModifiedOutput() throws IOException {
+            // Given
+            Files.writeString(imageFile, "<svg>damaged</svg>");
+
+            // When
+            boolean result = manager.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertTrue(result);
+            assertFalse(Files.exists(imageFile));
+            assertTrue(Files.exists(outputFile));
+        }
+
+        @Test
+        @DisplayName("should check recorded outputs instead of expected output file")
+        void shouldCheckRecordedOutputsInsteadOfExpectedOutputFile() {
+            // When - the output file name expected by the caller was never written
+            boolean result = manager.needsRegeneration(sourceFile, tempDir.resolve("test.xhtml"));
+
+            // Then
+            assertFalse(result);
+        }
+
+        @Test
+        @DisplayName("should resume recorded outputs after interrupted build")
+        void shouldResumeRecordedOutputsAfterInterruptedBuild() throws Exception {
+            // Given
+            manager.close();
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // When
+            Files.delete(imageFile);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+    }
+
+    @Nested
+    @DisplayName("Journal")
+    class JournalTests {
+
+        @Test
+        @DisplayName("should resume rendered files after interrupted build")
+        void shouldResumeRenderedFilesAfterInterruptedBuild() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "content");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+
+            // When - the build is killed before the hash cache is saved
+            manager.close();
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+            assertTrue(Files.exists(tempDir.resolve(".asciidoc.state")));
+            assertFalse(Files.exists(tempDir.resolve(".asciidoc.journal")));
+        }
+
+        @Test
+        @DisplayName("should ignore torn journal record")
+        void shouldIgnoreTornJournalRecord() throws Exception {
+            // Given
+            Path first = tempDir.resolve("first.adoc");
+            Path second = tempDir.resolve("second.adoc");
+            Files.writeString(first, "first");
+            Files.writeString(second, "second");
+            Files.writeString(tempDir.resolve("first.html"), "output");
+            Files.writeString(tempDir.resolve("second.html"), "output");
+            manager.updateHash(first);
+            manager.updateHash(second);
+            manager.close();
+
+            // When - the build was killed while appending the second record
+            Path journalFile = tempDir.resolve(".asciidoc.journal");
+            byte[] journal = Files.readAllBytes(journalFile);
+            Files.write(journalFile, Arrays.copyOf(journal, journal.length - 3));
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(first, tempDir.resolve("first.html")));
+            assertTrue(nextBuild.needsRegeneration(second, tempDir.resolve("second.html")));
+        }
+
+        @Test
+        @DisplayName("should delete journal when hash cache is saved")
+        void shouldDeleteJournalWhenHashCacheIsSaved() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Files.writeString(sourceFile, "content");
+            manager.updateHash(sourceFile);
+            assertTrue(Files.exists(tempDir.resolve(".asciidoc.journal")));
+
+            // When
+            manager.saveHashCache();
+
+            // Then
+            assertFalse(Files.exists(tempDir.resolve(".asciidoc.journal")));
+        }
+    }
+
+    @Nested
+    @DisplayName("Hash Algorithm")
+    class HashAlgorithmTests {
+
+        @Test
+        @DisplayName("should not regenerate unchanged file with fast hash")
+        void shouldNotRegenerateUnchangedFileWithFastHash() throws Exception {
+            // Given
+            IncrementalBuildManager fastManager = new IncrementalBuildManager(workDirectory, mockLog,
+                    new DependencyScanner(), HashAlgorithm.XXH64);
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "content");
+            Files.writeString(outputFile, "output");
+            fastManager.updateHash(sourceFile);
+            fastManager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog,
+                    new DependencyScanner(), HashAlgorithm.XXH64);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should regenerate all files when hash algorithm changes")
+        void shouldRegenerateAllFilesWhenHashAlgorithmChanges() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "content");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog,
+                    new DependencyScanner(), HashAlgorithm.XXH64);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should keep recorded outputs when hash algorithm changes")
+        void shouldKeepRecordedOutputsWhenHashAlgorithmChanges() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Path imageFile = tempDir.resolve("diagram.png");
+            Files.writeString(sourceFile, "content");
+            Files.writeString(outputFile, "output");
+            Files.write(imageFile, new byte[] { 1, 2, 3 });
+            manager.updateHash(sourceFile, List.of(outputFile, imageFile));
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog,
+                    new DependencyScanner(), HashAlgorithm.XXH64);
+            boolean needsRegeneration = nextBuild.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertTrue(needsRegeneration);
+            assertTrue(Files.exists(outputFile));
+            assertTrue(Files.exists(imageFile));
+        }
+    }
+
+    @Nested
+    @DisplayName("Parallel Checks")
+    class ParallelCheckTests {
+
+        @Test
+        @DisplayName("should detect changed files when checked concurrently")
+        void shouldDetectChangedFilesWhenCheckedConcurrently() throws Exception {
+            // Given
+            Files.writeString(tempDir.resolve("_shared.adoc"), "Shared text");
+            List<Path> sourceFiles = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Path sourceFile = tempDir.resolve("page" + i + ".adoc");
+                Files.writeString(sourceFile, "= Page " + i + "\n\ninclude::_shared.adoc[]\n");
+                Files.writeString(tempDir.resolve("page" + i + ".html"), "output");
+                manager.updateHash(sourceFile);
+                sourceFiles.add(sourceFile);
+            }
+            manager.saveHashCache();
+            for (int i = 0; i < 100; i += 2) {
+                Files.writeString(sourceFiles.get(i), "= Changed page " + i);
+                Files.writeString(tempDir.resolve("page" + i + ".html"), "output");
+            }
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            List<Boolean> dirty = sourceFiles
+                    .parallelStream()
+                    .map(file -> nextBuild
+                            .needsRegeneration(file, Path.of(file.toString().replace(".adoc", ".html"))))
+                    .collect(Collectors.toList());
+
+            // Then
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i % 2 == 0, dirty.get(i), "page" + i);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("File Stats")
+    class FileStatTests {
+
+        @Test
+        @DisplayName("should not hash file when size and modification time are unchanged")
+        void shouldNotHashFileWhenSizeAndModificationTimeAreUnchanged() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "original content");
+            Files.writeString(outputFile, "output");
+            FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+            Files.setLastModifiedTime(sourceFile, lastModified);
+            manager.needsRegeneration(sourceFile, outputFile);
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When - same size and timestamp, so the content is not read again
+            Files.writeString(sourceFile, "modified content");
+            Files.setLastModifiedTime(sourceFile, lastModified);
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should hash file when hashing is forced")
+        void shouldHashFileWhenHashingIsForced() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "original content");
+            Files.writeString(outputFile, "output");
+            FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+            Files.setLastModifiedTime(sourceFile, lastModified);
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            Files.writeString(sourceFile, "modified content");
+            Files.setLastModifiedTime(sourceFile, lastModified);
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            nextBuild.setForceHash(true);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should hash recently modified file")
+        void shouldHashRecentlyModifiedFile() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("test.adoc");
+            Path outputFile = tempDir.resolve("test.html");
+            Files.writeString(sourceFile, "original content");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+            FileTime lastModified = Files.getLastModifiedTime(sourceFile);
+
+            // When - a change within the timestamp granularity of the file system
+            Files.writeString(sourceFile, "modified content");
+            Files.setLastModifiedTime(sourceFile, lastModified);
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+    }
+
     @Nested
     @DisplayName("updateHash")
     class UpdateHashTests {
@@ -275,10 +763,8 @@ class IncrementalBuildManagerTest {
             manager.saveHashCache();
 
             // Then
-            File hashFile = new File(workDirectory, ".asciidoc.hashes");
-            Properties props = new Properties();
-            props.load(Files.newInputStream(hashFile.toPath()));
-            assertNotNull(props.getProperty(sourceFile.toString()));
+            IncrementalStateStore.Table hashes = loadHashes();
+            assertNotNull(hashes.get(sourceFile.toString()));
         }
 
         @Test
@@ -335,9 +821,8 @@ class IncrementalBuildManagerTest {
             manager.saveHashCache();
 
             // Then
-            Properties props = new Properties();
-            props.load(Files.newInputStream(new File(workDirectory, ".asciidoc.hashes").toPath()));
-            assertEquals(2, props.size());
+            IncrementalStateStore.Table hashes = loadHashes();
+            assertEquals(2, hashes.keys().size());
         }
 
         @Test
@@ -354,6 +839,7 @@ class IncrementalBuildManagerTest {
             manager.updateHash(file1);
             manager.updateHash(file2);
             manager.updateHash(file3);
+            Files.delete(file3);
 
             Map<String, Path> currentFiles = new HashMap<>();
             currentFiles.put(file1.toString(), file1);
@@ -364,12 +850,300 @@ class IncrementalBuildManagerTest {
             manager.saveHashCache();
 
             // Then
-            Properties props = new Properties();
-            props.load(Files.newInputStream(new File(workDirectory, ".asciidoc.hashes").toPath()));
-            assertEquals(2, props.size());
-            assertNotNull(props.getProperty(file1.toString()));
-            assertNotNull(props.getProperty(file2.toString()));
-            assertNull(props.getProperty(file3.toString()));
+            IncrementalStateStore.Table hashes = loadHashes();
+            assertEquals(2, hashes.keys().size());
+            assertNotNull(hashes.get(file1.toString()));
+            assertNotNull(hashes.get(file2.toString()));
+            assertNull(hashes.get(file3.toString()));
+        }
+
+        @Test
+        @DisplayName("should delete outputs of removed sources")
+        void shouldDeleteOutputsOfRemovedSources() throws IOException {
+            // Given
+            Path kept = Files.writeString(tempDir.resolve("kept.adoc"), "kept");
+            Path removed = Files.writeString(tempDir.resolve("removed.adoc"), "removed");
+            Path keptOutput = Files.writeString(tempDir.resolve("kept.html"), "output");
+            Path removedOutput = Files.writeString(tempDir.resolve("removed.html"), "output");
+            Path removedImage = Files.writeString(tempDir.resolve("removed.svg"), "<svg/>");
+            manager.updateHash(kept, List.of(keptOutput));
+            manager.updateHash(removed, List.of(removedOutput, removedImage));
+            Files.delete(removed);
+
+            // When
+            manager.removeStaleEntries(Map.of(kept.toString(), kept));
+
+            // Then
+            assertTrue(Files.exists(keptOutput));
+            assertFalse(Files.exists(removedOutput));
+            assertFalse(Files.exists(removedImage));
+        }
+
+        @Test
+        @DisplayName("should keep outputs shared with current sources")
+        void shouldKeepOutputsSharedWithCurrentSources() throws IOException {
+            // Given
+            Path kept = Files.writeString(tempDir.resolve("kept.adoc"), "kept");
+            Path removed = Files.writeString(tempDir.resolve("removed.adoc"), "removed");
+            Path sharedImage = Files.writeString(tempDir.resolve("shared.svg"), "<svg/>");
+            manager.updateHash(kept, List.of(sharedImage));
+            manager.updateHash(removed, List.of(sharedImage));
+            Files.delete(removed);
+
+            // When
+            manager.removeStaleEntries(Map.of(kept.toString(), kept));
+
+            // Then
+            assertTrue(Files.exists(sharedImage));
+        }
+
+        @Test
+        @DisplayName("should keep outputs of existing sources outside this build")
+        void shouldKeepOutputsOfExistingSourcesOutsideThisBuild() throws IOException {
+            // Given
+            Path rendered = Files.writeString(tempDir.resolve("intro.adoc"), "intro");
+            Path excluded = Files.writeString(tempDir.resolve("guide.adoc"), "guide");
+            Path excludedOutput = Files.writeString(tempDir.resolve("guide.html"), "output");
+            manager.updateHash(rendered);
+            manager.updateHash(excluded, List.of(excludedOutput));
+
+            // When - the includes of this build only match intro.adoc
+            manager.removeStaleEntries(Map.of(rendered.toString(), rendered));
+            manager.saveHashCache();
+
+            // Then
+            assertTrue(Files.exists(excludedOutput));
+            assertNotNull(loadHashes().get(excluded.toString()));
+        }
+
+        @Test
+        @DisplayName("should delete outputs no longer produced by rendered source")
+        void shouldDeleteOutputsNoLongerProducedByRenderedSource() throws IOException {
+            // Given
+            Path sourceFile = Files.writeString(tempDir.resolve("page.adoc"), "page");
+            Path outputFile = Files.writeString(tempDir.resolve("page.html"), "output");
+            Path oldImage = Files.writeString(tempDir.resolve("old.svg"), "<svg/>");
+            Path newImage = Files.writeString(tempDir.resolve("new.svg"), "<svg/>");
+            manager.updateHash(sourceFile, List.of(outputFile, oldImage));
+
+            // When - the diagram was edited and rendered to a new image
+            manager.updateHash(sourceFile, List.of(outputFile, newImage));
+            manager.removeStaleEntries(Map.of(sourceFile.toString(), sourceFile));
+
+            // Then
+            assertTrue(Files.exists(outputFile));
+            assertTrue(Files.exists(newImage));
+            assertFalse(Files.exists(oldImage));
+        }
+    }
+
+    @Nested
+    @DisplayName("Configuration")
+    class ConfigurationTests {
+
+        @Test
+        @DisplayName("should regenerate all files when configuration changes")
+        void shouldRegenerateAllFilesWhenConfigurationChanges() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page");
+            Files.writeString(outputFile, "output");
+            manager.applyConfiguration(fingerprint("toc", "left"));
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            boolean changed = nextBuild.applyConfiguration(fingerprint("toc", "right"));
+
+            // Then
+            assertTrue(changed);
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should keep cached hashes when configuration is unchanged")
+        void shouldKeepCachedHashesWhenConfigurationIsUnchanged() throws Exception {
+            // Given
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page");
+            Files.writeString(outputFile, "output");
+            manager.applyConfiguration(fingerprint("toc", "left"));
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+            boolean changed = nextBuild.applyConfiguration(fingerprint("toc", "left"));
+
+            // Then
+            assertFalse(changed);
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        private ConfigurationFingerprint fingerprint(String attribute, String value) {
+            ConfigurationFingerprint fingerprint = new ConfigurationFingerprint();
+            fingerprint.put("attributes", Map.of(attribute, value));
+            fingerprint.put("outputFormat", "html");
+            return fingerprint;
+        }
+    }
+
+    @Nested
+    @DisplayName("Dependencies")
+    class DependencyTests {
+
+        @Test
+        @DisplayName("should regenerate when included file changes")
+        void shouldRegenerateWhenIncludedFileChanges() throws Exception {
+            // Given
+            Path partial = Files.createDirectories(tempDir.resolve("partials")).resolve("_legal.adoc");
+            Files.writeString(partial, "Original legal text");
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page\n\ninclude::partials/_legal.adoc[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            Files.writeString(partial, "Changed legal text");
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should follow nested includes transitively")
+        void shouldFollowNestedIncludesTransitively() throws Exception {
+            // Given
+            Path partials = Files.createDirectories(tempDir.resolve("partials"));
+            Files.writeString(partials.resolve("chapter.adoc"), "include::_footer.adoc[]\n");
+            Path footer = Files.writeString(partials.resolve("_footer.adoc"), "Footer");
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, ":partialsdir: partials\n\ninclude::{partialsdir}/chapter.adoc[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            Files.writeString(footer, "Changed footer");
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should regenerate when referenced image changes")
+        void shouldRegenerateWhenReferencedImageChanges() throws Exception {
+            // Given
+            Path image = Files.createDirectories(tempDir.resolve("images")).resolve("logo.png");
+            Files.write(image, new byte[] { 1, 2, 3 });
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page\n:imagesdir: images\n\nimage::logo.png[Logo]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            Files.write(image, new byte[] { 4, 5, 6 });
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should not regenerate when dependencies are unchanged")
+        void shouldNotRegenerateWhenDependenciesAreUnchanged() throws Exception {
+            // Given
+            Files.writeString(tempDir.resolve("_legal.adoc"), "Legal text");
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page\n\ninclude::_legal.adoc[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should not regenerate unchanged documents with conditional directives")
+        void shouldNotRegenerateUnchangedDocumentsWithConditionalDirectives() throws Exception {
+            // Given
+            Files.writeString(tempDir.resolve("_site.adoc"), "Site text");
+            Files.writeString(tempDir.resolve("_github.adoc"), "GitHub text");
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files
+                    .writeString(sourceFile,
+                            "= Page\n\nifdef::env-github[]\ninclude::_github.adoc[]\nendif::[]\n"
+                                    + "ifndef::env-github[]\ninclude::_site.adoc[]\nendif::[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertFalse(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should regenerate when include of any conditional branch changes")
+        void shouldRegenerateWhenIncludeOfAnyConditionalBranchChanges() throws Exception {
+            // Given
+            Files
+                    .writeString(Files.createDirectories(tempDir.resolve("github")).resolve("_intro.adoc"),
+                            "GitHub intro");
+            Path site = Files.writeString(Files.createDirectories(tempDir.resolve("site")).resolve("_intro.adoc"),
+                    "Site intro");
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files
+                    .writeString(sourceFile,
+                            "= Page\nifdef::env-github[]\n:partialsdir: github\nendif::[]\n"
+                                    + "ifndef::env-github[]\n:partialsdir: site\nendif::[]\n\n"
+                                    + "include::{partialsdir}/_intro.adoc[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+            manager.saveHashCache();
+
+            // When
+            Files.writeString(site, "Changed site intro");
+            IncrementalBuildManager nextBuild = new IncrementalBuildManager(workDirectory, mockLog);
+
+            // Then
+            assertTrue(nextBuild.needsRegeneration(sourceFile, outputFile));
+        }
+
+        @Test
+        @DisplayName("should always regenerate documents with unresolvable includes")
+        void shouldAlwaysRegenerateDocumentsWithUnresolvableIncludes() throws IOException {
+            // Given
+            Path sourceFile = tempDir.resolve("page.adoc");
+            Path outputFile = tempDir.resolve("page.html");
+            Files.writeString(sourceFile, "= Page\n\ninclude::{undefined}/chapter.adoc[]\n");
+            Files.writeString(outputFile, "output");
+            manager.updateHash(sourceFile);
+
+            // When
+            boolean needsRegeneration = manager.needsRegeneration(sourceFile, outputFile);
+
+            // Then
+            assertTrue(needsRegeneration);
         }
     }
 
@@ -396,12 +1170,31 @@ class IncrementalBuildManagerTest {
             // Then
             assertEquals(hash1, hash2);
         }
+
+        @Test
+        @DisplayName("should hash files larger than the read buffer")
+        void shouldHashFilesLargerThanReadBuffer() throws Exception {
+            // Given
+            Path file = tempDir.resolve("data.yaml");
+            byte[] content = "key: value\n".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+            Files.write(file, content);
+
+            // When
+            manager.updateHash(file);
+            String hash = getHashFromCache(file);
+
+            // Then
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(content);
+            assertEquals(HexFormat.of().formatHex(expected), hash);
+        }
     }
 
     private String getHashFromCache(Path file) throws IOException {
         manager.saveHashCache();
-        Properties props = new Properties();
-        props.load(Files.newInputStream(new File(workDirectory, ".asciidoc.hashes").toPath()));
-        return props.getProperty(file.toString());
+        return loadHashes().get(file.toString());
+    }
+
+    private IncrementalStateStore.Table loadHashes() {
+        return new IncrementalStateStore(new File(workDirectory, ".asciidoc.state").toPath(), mockLog).table("hashes");
     }
 }
\ No newline at end of file
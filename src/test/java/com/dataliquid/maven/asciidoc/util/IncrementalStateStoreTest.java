@@ -0,0 +1,147 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@DisplayName("IncrementalStateStore")
+class IncrementalStateStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private Log mockLog;
+
+    private Path stateFile;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        stateFile = tempDir.resolve(".asciidoc.state");
+    }
+
+    @Test
+    @DisplayName("should read saved entries")
+    void shouldReadSavedEntries() throws IOException {
+        // Given
+        IncrementalStateStore store = new IncrementalStateStore(stateFile, mockLog);
+        for (int i = 0; i < 1000; i++) {
+            store.table("hashes").put("/docs/page" + i + ".adoc", "hash" + i);
+        }
+        store.table("configuration").put("outputFormat", "html");
+        store.save();
+
+        // When
+        IncrementalStateStore loaded = new IncrementalStateStore(stateFile, mockLog);
+
+        // Then
+        assertEquals(1000, loaded.table("hashes").keys().size());
+        assertEquals("hash0", loaded.table("hashes").get("/docs/page0.adoc"));
+        assertEquals("hash517", loaded.table("hashes").get("/docs/page517.adoc"));
+        assertEquals("hash999", loaded.table("hashes").get("/docs/page999.adoc"));
+        assertNull(loaded.table("hashes").get("/docs/missing.adoc"));
+        assertEquals("html", loaded.table("configuration").get("outputFormat"));
+    }
+
+    @Test
+    @DisplayName("should not rewrite unchanged state")
+    void shouldNotRewriteUnchangedState() throws IOException {
+        // Given
+        IncrementalStateStore store = new IncrementalStateStore(stateFile, mockLog);
+        store.table("hashes").put("/docs/index.adoc", "abc");
+        store.save();
+
+        // When
+        IncrementalStateStore loaded = new IncrementalStateStore(stateFile, mockLog);
+        loaded.table("hashes").put("/docs/index.adoc", "abc");
+        boolean written = loaded.save();
+
+        // Then
+        assertFalse(written);
+    }
+
+    @Test
+    @DisplayName("should persist removed and cleared entries")
+    void shouldPersistRemovedAndClearedEntries() throws IOException {
+        // Given
+        IncrementalStateStore store = new IncrementalStateStore(stateFile, mockLog);
+        store.table("hashes").put("/docs/a.adoc", "1");
+        store.table("hashes").put("/docs/b.adoc", "2");
+        store.table("stats").put("/docs/a.adoc", "7 1000 1");
+        store.save();
+
+        // When
+        IncrementalStateStore loaded = new IncrementalStateStore(stateFile, mockLog);
+        loaded.table("hashes").removeIf(key -> key.endsWith("b.adoc"));
+        loaded.table("stats").clear();
+        boolean written = loaded.save();
+
+        // Then
+        assertTrue(written);
+        IncrementalStateStore reloaded = new IncrementalStateStore(stateFile, mockLog);
+        assertEquals(List.of("/docs/a.adoc"), List.copyOf(reloaded.table("hashes").keys()));
+        assertTrue(reloaded.table("stats").isEmpty());
+    }
+
+    @Test
+    @DisplayName("should list keys of the file and of changes in sorted order")
+    void shouldListKeysOfTheFileAndOfChangesInSortedOrder() throws IOException {
+        // Given
+        IncrementalStateStore store = new IncrementalStateStore(stateFile, mockLog);
+        store.table("hashes").put("/docs/b.adoc", "1");
+        store.table("hashes").put("/docs/d.adoc", "2");
+        store.table("hashes").put("/docs/f.adoc", "3");
+        store.save();
+
+        // When
+        IncrementalStateStore loaded = new IncrementalStateStore(stateFile, mockLog);
+        IncrementalStateStore.Table hashes = loaded.table("hashes");
+        hashes.put("/docs/a.adoc", "4");
+        hashes.put("/docs/d.adoc", "5");
+        hashes.put("/docs/e.adoc", "6");
+        hashes.remove("/docs/f.adoc");
+        hashes.remove("/docs/missing.adoc");
+
+        // Then
+        assertEquals(List.of("/docs/a.adoc", "/docs/b.adoc", "/docs/d.adoc", "/docs/e.adoc"),
+                List.copyOf(hashes.keys()));
+        assertEquals(4, hashes.keys().size());
+        assertFalse(hashes.isEmpty());
+        hashes.removeIf(key -> true);
+        assertTrue(hashes.isEmpty());
+        assertTrue(hashes.keys().isEmpty());
+    }
+
+    @Test
+    @DisplayName("should start empty when file is corrupt")
+    void shouldStartEmptyWhenFileIsCorrupt() throws IOException {
+        // Given
+        IncrementalStateStore store = new IncrementalStateStore(stateFile, mockLog);
+        store.table("hashes").put("/docs/index.adoc", "abc");
+        store.save();
+        byte[] content = Files.readAllBytes(stateFile);
+        Files.write(stateFile, Arrays.copyOf(content, content.length - 2));
+
+        // When
+        IncrementalStateStore loaded = new IncrementalStateStore(stateFile, mockLog);
+
+        // Then
+        assertTrue(loaded.table("hashes").isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("SourceCache")
+class SourceCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("should read source only once")
+    void shouldReadSourceOnlyOnce() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache();
+        Path source = Files.writeString(tempDir.resolve("page.adoc"), "= Page");
+        SourceCache.Source first = cache.get(source);
+
+        // When
+        Files.writeString(source, "= Changed");
+        SourceCache.Source second = cache.get(source);
+
+        // Then
+        assertSame(first, second);
+        assertEquals("= Page", second.getText());
+    }
+
+    @Test
+    @DisplayName("should read source again after release")
+    void shouldReadSourceAgainAfterRelease() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache();
+        Path source = Files.writeString(tempDir.resolve("page.adoc"), "= Page");
+        cache.get(source);
+
+        // When
+        Files.writeString(source, "= Changed");
+        cache.release(source);
+
+        // Then
+        assertEquals("= Changed", cache.get(source).getText());
+    }
+
+    @Test
+    @DisplayName("should not keep sources exceeding memory budget")
+    void shouldNotKeepSourcesExceedingMemoryBudget() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache(8);
+        Path small = Files.writeString(tempDir.resolve("small.adoc"), "small");
+        Path large = Files.writeString(tempDir.resolve("large.adoc"), "larger than the budget");
+
+        // When
+        SourceCache.Source smallSource = cache.get(small);
+        SourceCache.Source largeSource = cache.get(large);
+
+        // Then
+        assertSame(smallSource, cache.get(small));
+        assertNotSame(largeSource, cache.get(large));
+        assertEquals("larger than the budget", cache.get(large).getText());
+    }
+
+    @Test
+    @DisplayName("should count decoded text towards memory budget")
+    void shouldCountDecodedTextTowardsMemoryBudget() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache(64);
+        Path source = Files.writeString(tempDir.resolve("page.adoc"), "= Page");
+
+        // When
+        cache.get(source).getText();
+        long retained = cache.getRetainedBytes();
+        cache.release(source);
+
+        // Then
+        assertEquals(6 + 2 * 6, retained);
+        assertEquals(0, cache.getRetainedBytes());
+    }
+
+    @Test
+    @DisplayName("should not keep decoded text exceeding memory budget")
+    void shouldNotKeepDecodedTextExceedingMemoryBudget() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache(8);
+        Path source = Files.writeString(tempDir.resolve("page.adoc"), "= Page");
+        SourceCache.Source content = cache.get(source);
+
+        // When
+        String first = content.getText();
+        String second = content.getText();
+
+        // Then
+        assertEquals("= Page", second);
+        assertNotSame(first, second);
+        assertEquals(6, cache.getRetainedBytes());
+    }
+
+    @Test
+    @DisplayName("should report malformed UTF-8 content")
+    void shouldReportMalformedUtf8Content() throws IOException {
+        // Given
+        SourceCache cache = new SourceCache();
+        Path source = Files.write(tempDir.resolve("latin1.adoc"), new byte[] { 'c', 'a', 'f', (byte) 0xE9 });
+
+        // When
+        SourceCache.Source content = cache.get(source);
+
+        // Then
+        assertEquals(4, content.getBytes().length);
+        assertThrows(CharacterCodingException.class, content::getText);
+    }
+}
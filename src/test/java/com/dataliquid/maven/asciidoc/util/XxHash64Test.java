@@ -0,0 +1,67 @@
+package com.dataliquid.maven.asciidoc.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("XxHash64")
+class XxHash64Test {
+
+    @Test
+    @DisplayName("should match reference hash values")
+    void shouldMatchReferenceHashValues() {
+        // Given
+        XxHash64 hasher = new XxHash64();
+
+        // When & Then
+        assertEquals("ef46db3751d8e999", hash(hasher, ""));
+        assertEquals("d24ec4f1a98c6e5b", hash(hasher, "a"));
+        assertEquals("44bc2cf5ad770999", hash(hasher, "abc"));
+        assertEquals("fbcea83c8a378bf1", hash(hasher, "Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    @DisplayName("should produce same hash for chunked input")
+    void shouldProduceSameHashForChunkedInput() {
+        // Given
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        XxHash64 whole = new XxHash64();
+        XxHash64 chunked = new XxHash64();
+
+        // When
+        whole.update(ByteBuffer.wrap(content));
+        for (int offset = 0; offset < content.length; offset += 7) {
+            chunked.update(ByteBuffer.wrap(content, offset, Math.min(7, content.length - offset)));
+        }
+
+        // Then
+        assertEquals(HexFormat.of().formatHex(whole.digest()), HexFormat.of().formatHex(chunked.digest()));
+    }
+
+    @Test
+    @DisplayName("should reset after digest")
+    void shouldResetAfterDigest() {
+        // Given
+        XxHash64 hasher = new XxHash64();
+        hash(hasher, "previous input");
+
+        // When
+        String hash = hash(hasher, "abc");
+
+        // Then
+        assertEquals("44bc2cf5ad770999", hash);
+    }
+
+    private String hash(XxHash64 hasher, String input) {
+        hasher.update(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+        return HexFormat.of().formatHex(hasher.digest());
+    }
+}